@@ -0,0 +1,77 @@
+package hu.zza.util.gitform;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+/**
+ * The thin client of {@link GitFormDaemon}: it sends the command line to the daemon, and copies
+ * the response to the standard output. If the daemon is not running, or it doesn't serve the
+ * command (e.g. {@code watch}, or anything with {@code --events}), the command runs in this
+ * process by {@link GitForm#main(String[])}, so the client can stand in for {@code git-form}.
+ */
+public final class GitFormClient {
+  private GitFormClient() {}
+
+  public static void main(String[] args) throws IOException {
+    Path socketFile = new Settings().getDaemonSocketFile();
+    SocketChannel channel = isServed(args) ? connect(socketFile) : null;
+
+    if (channel == null && args.length > 0 && GitFormDaemon.stopCommand.equals(args[0])) {
+      System.out.printf("No daemon is running at %s%n%n", socketFile);
+    } else if (channel == null) {
+      GitForm.main(args);
+    } else {
+      try (channel) {
+        channel.write(ByteBuffer.wrap(encodeRequest(args)));
+        channel.shutdownOutput();
+        InputStream response = Channels.newInputStream(channel);
+        response.transferTo(System.out);
+        System.out.flush();
+      }
+    }
+  }
+
+  /**
+   * @param args the command line
+   * @return true if the daemon can run the command
+   */
+  static boolean isServed(String[] args) {
+    if (args.length == 0
+        || !(GitFormDaemon.commands.contains(args[0])
+            || GitFormDaemon.stopCommand.equals(args[0]))) {
+      return false;
+    }
+    for (String arg : args) {
+      if (arg.isEmpty() || arg.contains("\n") || "--events".equals(arg)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @param socketFile the socket of the daemon
+   * @return a connection to the daemon, or null if it's not running
+   */
+  static SocketChannel connect(Path socketFile) {
+    try {
+      return SocketChannel.open(UnixDomainSocketAddress.of(socketFile));
+    } catch (IOException e) {
+      return null;
+    }
+  }
+
+  /**
+   * @param args the command line
+   * @return the request of the command line: one argument per line, closed by an empty line
+   */
+  static byte[] encodeRequest(String[] args) {
+    return (String.join("\n", args) + "\n\n").getBytes(StandardCharsets.UTF_8);
+  }
+}
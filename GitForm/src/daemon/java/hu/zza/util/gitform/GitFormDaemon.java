@@ -0,0 +1,222 @@
+package hu.zza.util.gitform;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * A resident GitForm ({@code git-form daemon}): it runs the {@code save}, {@code load}, {@code
+ * sync} and {@code status} commands of the clients one by one, so the JVM (with its compiled
+ * code), the {@link Settings}, the {@link ScanIndex} of the last save, the parsed project files of
+ * the last status check and the {@link GitBackend GitBackends} stay warm between the calls. The
+ * settings are read again only if {@code settings.yaml} changes.
+ *
+ * <p>The clients connect to the Unix domain socket {@link Settings#getDaemonSocketFile()}, in a
+ * folder which only the user can access. The protocol is plain text, so a shell prompt can use it
+ * without a JVM too, e.g. {@code printf 'status\n\n' | nc -U ~/.git-form/daemon/socket}: the
+ * request is the command line (one argument per line, closed by an empty line), the response is
+ * the output of the command, then the daemon closes the connection. {@link GitFormClient} is the
+ * client of {@code git-form} itself. The {@code stop} command stops the daemon.
+ *
+ * <p>It needs JDK 16 or newer (for {@link UnixDomainSocketAddress}), so it's in the {@code daemon}
+ * source set: the rest of GitForm still runs on Java 11.
+ */
+public class GitFormDaemon {
+  static final Set<String> commands = Set.of("save", "load", "sync", "status");
+  static final String stopCommand = "stop";
+  private final Path socketFile;
+  private Settings settings;
+  private GitConfig.FileStamp settingsStamp;
+  private ProjectMapper mapper;
+  private StatusChecker checker;
+
+  public GitFormDaemon() {
+    socketFile = new Settings().getDaemonSocketFile();
+  }
+
+  public static void main(String[] args) {
+    try {
+      new GitFormDaemon().serve();
+    } catch (IOException e) {
+      System.err.printf("Cannot run the daemon: %s%n", e);
+    }
+  }
+
+  /**
+   * Binds the socket, and serves the clients one by one until a {@code stop} command. The socket
+   * file is deleted at the end (or when the process is stopped).
+   *
+   * @throws IOException if another daemon is running, or the socket cannot be bound
+   */
+  public void serve() throws IOException {
+    refreshSettings();
+    prepareSocketFolder();
+    try (SocketChannel running = GitFormClient.connect(socketFile)) {
+      if (running != null) {
+        throw new IOException("A daemon is already running at " + socketFile);
+      }
+    }
+    Files.deleteIfExists(socketFile);
+
+    try (ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+      server.bind(UnixDomainSocketAddress.of(socketFile));
+      Runtime.getRuntime().addShutdownHook(new Thread(this::deleteSocketFile));
+      System.out.printf("Serving %s, stop it with: git-form stop%n%n", socketFile);
+
+      boolean running = true;
+      while (running) {
+        try (SocketChannel client = server.accept()) {
+          running = handle(client);
+        } catch (IOException | RuntimeException e) {
+          System.err.printf("Cannot serve a client: %s%n", e);
+        }
+      }
+    } finally {
+      deleteSocketFile();
+    }
+  }
+
+  /**
+   * Creates the folder of the socket with {@code rwx------} permissions, so the other users cannot
+   * connect (on a file system without POSIX permissions it's left as it is).
+   *
+   * @throws IOException if the folder cannot be created
+   */
+  private void prepareSocketFolder() throws IOException {
+    Path folder = socketFile.getParent();
+    Files.createDirectories(folder);
+    try {
+      Files.setPosixFilePermissions(folder, PosixFilePermissions.fromString("rwx------"));
+    } catch (UnsupportedOperationException ignored) {
+      // Not a POSIX file system.
+    }
+  }
+
+  private void deleteSocketFile() {
+    try {
+      Files.deleteIfExists(socketFile);
+    } catch (IOException ignored) {
+      // It's already gone, or a new daemon owns it.
+    }
+  }
+
+  /**
+   * Reads a request, and runs it with the standard output and error redirected to the client. If
+   * the command fails unexpectedly, the settings (and the warm state) are dropped.
+   *
+   * @param client the connection of a client
+   * @return false if the daemon has to stop
+   * @throws IOException if the request cannot be read
+   */
+  private boolean handle(SocketChannel client) throws IOException {
+    List<String> args = readRequest(client);
+    if (args.isEmpty()) {
+      return true;
+    }
+    PrintStream stdout = System.out;
+    PrintStream stderr = System.err;
+    var out =
+        new PrintStream(
+            new BufferedOutputStream(Channels.newOutputStream(client), 1 << 16),
+            false,
+            StandardCharsets.UTF_8);
+    System.setOut(out);
+    System.setErr(out);
+    try {
+      return run(args);
+    } catch (RuntimeException e) {
+      System.err.printf("Cannot run %s: %s%n%n", args.get(0), e);
+      settings = null;
+      return true;
+    } finally {
+      out.flush();
+      System.setOut(stdout);
+      System.setErr(stderr);
+    }
+  }
+
+  /**
+   * @param client the connection of a client
+   * @return the arguments of the request, or an empty list if the client has sent nothing
+   * @throws IOException if the request cannot be read
+   */
+  private static List<String> readRequest(SocketChannel client) throws IOException {
+    var reader =
+        new BufferedReader(
+            new InputStreamReader(Channels.newInputStream(client), StandardCharsets.UTF_8));
+    var args = new ArrayList<String>();
+    String line;
+    while ((line = reader.readLine()) != null && !line.isEmpty()) {
+      args.add(line);
+    }
+    return args;
+  }
+
+  /**
+   * @param args the command line of the client
+   * @return false if the daemon has to stop
+   */
+  private boolean run(List<String> args) {
+    String command = args.get(0);
+    List<String> options = args.subList(1, args.size());
+    System.out.println();
+
+    if (stopCommand.equals(command)) {
+      System.out.printf("The daemon has stopped.%n%n");
+      return false;
+    }
+    refreshSettings();
+
+    if ("save".equals(command)) {
+      mapper.save(options.contains("--full"));
+    } else if ("load".equals(command)) {
+      new ProjectBuilder(settings).load();
+    } else if ("sync".equals(command)) {
+      new ProjectBuilder(settings).sync();
+    } else if ("status".equals(command)) {
+      checker.status(options.contains("--fetch"), options.contains("--full"));
+    } else {
+      System.out.printf("The daemon runs %s and %s only.%n%n", commands, stopCommand);
+    }
+    return true;
+  }
+
+  /** Reads the settings again (and drops the warm state) if {@code settings.yaml} has changed. */
+  private void refreshSettings() {
+    if (settings != null && Objects.equals(settingsStamp, stampOf(settings.getSettingsFile()))) {
+      return;
+    }
+    settings = new Settings();
+    settings.init();
+    settingsStamp = stampOf(settings.getSettingsFile());
+    mapper = new ProjectMapper(settings);
+    checker = new StatusChecker(settings);
+  }
+
+  /**
+   * @param file a {@link Path}
+   * @return the current {@link GitConfig.FileStamp} of the file, or null if it cannot be read
+   */
+  private static GitConfig.FileStamp stampOf(Path file) {
+    try {
+      return GitConfig.FileStamp.of(file);
+    } catch (IOException e) {
+      return null;
+    }
+  }
+}
@@ -0,0 +1,180 @@
+package hu.zza.util.gitform;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import org.eclipse.jgit.api.CloneCommand;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.Status;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.BranchConfig;
+import org.eclipse.jgit.lib.BranchTrackingStatus;
+import org.eclipse.jgit.lib.ConfigConstants;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
+
+/**
+ * An in-process {@link GitBackend} based on JGit: no process is started, so it's cheap for many
+ * small operations (status checks, remote lookups). It's in the {@code jgit} source set, and it's
+ * found by {@link java.util.ServiceLoader} when the {@code jgit} jar and JGit are on the class
+ * path ({@code gradle jgitLibs} collects them for {@code git-form-cds}). Select it with {@code
+ * backend: jgit} (or e.g. {@code backend: process, status=jgit}) in {@code settings.yaml}.
+ *
+ * <p>Limitations: a partial clone ({@code blobless}, {@code treeless}) is not supported, and the
+ * {@link MirrorCache} is ignored (JGit can't borrow objects from a reference repository).
+ */
+public class JGitBackend implements GitBackend {
+  public static final String backendName = "jgit";
+
+  @Override
+  public String getName() {
+    return backendName;
+  }
+
+  @Override
+  public Integer clone(String originUrl, Path rootPath, CloneProfile profile, Path mirror)
+      throws IOException {
+    if (profile.getFilter() != null) {
+      throw new IOException("jgit cannot make a partial clone: " + profile);
+    }
+    CloneCommand clone = Git.cloneRepository().setURI(originUrl).setDirectory(rootPath.toFile());
+
+    if (profile.getDepth() > 0) {
+      clone.setDepth(profile.getDepth());
+    }
+    try {
+      if (profile.isSingleBranch()) {
+        clone.setBranchesToClone(List.of(getDefaultBranch(originUrl)));
+      }
+      clone.call().close();
+      return null;
+    } catch (GitAPIException e) {
+      throw new IOException("jgit clone failed: " + e.getMessage(), e);
+    }
+  }
+
+  /**
+   * @param originUrl the URL of a remote
+   * @return the full name of the branch of the remote {@code HEAD}, e.g. {@code refs/heads/main}
+   * @throws GitAPIException if the remote cannot be listed
+   * @throws IOException if the remote has no {@code HEAD}
+   */
+  private static String getDefaultBranch(String originUrl) throws GitAPIException, IOException {
+    Ref head = Git.lsRemoteRepository().setRemote(originUrl).callAsMap().get(Constants.HEAD);
+
+    if (head == null || !head.isSymbolic()) {
+      throw new IOException("Cannot find the default branch of " + originUrl);
+    }
+    return head.getTarget().getName();
+  }
+
+  /** Fetches the remote of the current branch's upstream, or {@code origin} if there is none. */
+  @Override
+  public void fetch(Path rootPath) throws IOException {
+    try (Git git = Git.open(rootPath.toFile())) {
+      Repository repository = git.getRepository();
+      String remote = new BranchConfig(repository.getConfig(), repository.getBranch()).getRemote();
+
+      git.fetch().setRemote(remote == null ? Constants.DEFAULT_REMOTE_NAME : remote).call();
+    } catch (GitAPIException e) {
+      throw new IOException("jgit fetch failed: " + e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Computes the status like {@code git status --porcelain=v2 --branch}: a file with staged and
+   * unstaged changes counts in both, and an untracked folder counts as one untracked entry.
+   */
+  @Override
+  public RepositoryStatus status(Path rootPath) throws IOException {
+    try (Git git = Git.open(rootPath.toFile())) {
+      Repository repository = git.getRepository();
+      Status status = git.status().call();
+      Set<String> conflicting = status.getConflicting();
+
+      String fullBranch = repository.getFullBranch();
+      String branch = RepositoryStatus.detached;
+      String upstream = "";
+      int ahead = 0;
+      int behind = 0;
+
+      if (fullBranch != null && fullBranch.startsWith(Constants.R_HEADS)) {
+        branch = Repository.shortenRefName(fullBranch);
+        BranchTrackingStatus tracking = BranchTrackingStatus.of(repository, branch);
+
+        if (tracking != null) {
+          upstream = Repository.shortenRefName(tracking.getRemoteTrackingBranch());
+          ahead = tracking.getAheadCount();
+          behind = tracking.getBehindCount();
+        }
+      }
+      return new RepositoryStatus(
+          branch,
+          upstream,
+          ahead,
+          behind,
+          countWithout(conflicting, status.getAdded(), status.getChanged(), status.getRemoved()),
+          countWithout(conflicting, status.getModified(), status.getMissing()),
+          countUntracked(status),
+          conflicting.size());
+    } catch (GitAPIException e) {
+      throw new IOException("jgit status failed: " + e.getMessage(), e);
+    }
+  }
+
+  @SafeVarargs
+  private static int countWithout(Set<String> excluded, Set<String>... paths) {
+    var union = new TreeSet<String>();
+    for (Set<String> set : paths) {
+      union.addAll(set);
+    }
+    union.removeAll(excluded);
+    return union.size();
+  }
+
+  /**
+   * @param status the {@link Status} of the working tree
+   * @return the number of the untracked files outside the untracked folders, and the number of
+   *     the outermost untracked folders
+   */
+  private static int countUntracked(Status status) {
+    var folders = new HashSet<String>();
+    status.getUntrackedFolders().forEach(folder -> folders.add(folder.replaceFirst("/$", "")));
+
+    int count = 0;
+    for (String folder : folders) {
+      count += isInside(folder, folders) ? 0 : 1;
+    }
+    for (String file : status.getUntracked()) {
+      count += isInside(file, folders) ? 0 : 1;
+    }
+    return count;
+  }
+
+  /**
+   * @param path a path relative to the working tree, e.g. {@code a/b/c.txt}
+   * @param folders relative paths of folders
+   * @return true if a parent of {@code path} (e.g. {@code a} or {@code a/b}) is in {@code folders}
+   */
+  private static boolean isInside(String path, Set<String> folders) {
+    for (int i = path.indexOf('/'); i >= 0; i = path.indexOf('/', i + 1)) {
+      if (folders.contains(path.substring(0, i))) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public String getRemoteUrl(Path projectRoot, String remoteName) throws IOException {
+    try (Git git = Git.open(projectRoot.toFile())) {
+      return git.getRepository()
+          .getConfig()
+          .getString(ConfigConstants.CONFIG_REMOTE_SECTION, remoteName, "url");
+    }
+  }
+}
@@ -0,0 +1,115 @@
+package hu.zza.util.gitform;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class JGitBackendTest {
+  @TempDir Path root;
+  private Path work;
+  private String originUrl;
+  private GitBackend backend;
+
+  @BeforeEach
+  void setup() throws Exception {
+    Path origin = root.resolve("origin.git");
+    work = root.resolve("work");
+    originUrl = origin.toUri().toString();
+    git(root, "init", "--quiet", "--bare", "--initial-branch=main", origin.toString());
+    git(root, "clone", "--quiet", originUrl, work.toString());
+    pushCommit("README.md");
+    backend = GitBackend.create("jgit", new GitConfigCache());
+  }
+
+  @Test
+  void foundByServiceLoader() {
+    assertThat(backend).isInstanceOf(JGitBackend.class);
+    assertThat(GitBackend.create("process, status=jgit", new GitConfigCache()))
+        .isInstanceOf(PerOperationGitBackend.class);
+  }
+
+  @Test
+  void cloneFetchAndStatus() throws Exception {
+    Path project = root.resolve("my project");
+    backend.clone(originUrl, project, CloneProfile.full, null);
+
+    RepositoryStatus status = backend.status(project);
+    assertEquals("main", status.getBranch());
+    assertEquals("origin/main", status.getUpstream());
+    assertTrue(status.isClean());
+    assertTrue(status.isSynchronized());
+
+    pushCommit("CHANGELOG.md");
+    backend.fetch(project);
+    Files.writeString(project.resolve("README.md"), "changed");
+    Files.writeString(project.resolve("untracked.txt"), "untracked");
+    Files.createDirectories(project.resolve("new/folder"));
+    Files.writeString(project.resolve("new/folder/file.txt"), "untracked");
+
+    status = backend.status(project);
+    assertEquals(1, status.getBehind());
+    assertEquals(0, status.getAhead());
+    assertEquals(1, status.getUnstaged());
+    assertEquals(2, status.getUntracked());
+    assertEquals(new ProcessGitBackend().status(project).toString(), status.toString());
+  }
+
+  @Test
+  void remoteLookup() throws Exception {
+    Path project = root.resolve("project");
+    backend.clone(originUrl, project, CloneProfile.full, null);
+
+    assertEquals(originUrl, backend.getRemoteUrl(project, "origin"));
+    assertNull(backend.getRemoteUrl(project, "upstream"));
+  }
+
+  @Test
+  void cloneWithProfile() throws Exception {
+    pushCommit("CHANGELOG.md");
+    Path shallow = root.resolve("shallow");
+    backend.clone(originUrl, shallow, CloneProfile.parse("depth=1, single-branch"), null);
+
+    assertTrue(Files.exists(shallow.resolve(".git/shallow")));
+    assertEquals("1", output(shallow, "rev-list", "--count", "HEAD"));
+    CloneProfile blobless = CloneProfile.parse("blobless");
+    assertThrows(
+        IOException.class, () -> backend.clone(originUrl, root.resolve("partial"), blobless, null));
+  }
+
+  /** Commits a new file in the work clone, and pushes it to the origin. */
+  private void pushCommit(String fileName) throws Exception {
+    Files.writeString(work.resolve(fileName), fileName);
+    git(work, "add", fileName);
+    git(
+        work,
+        "-c",
+        "user.name=GitForm",
+        "-c",
+        "user.email=git-form@example.com",
+        "commit",
+        "--quiet",
+        "-m",
+        fileName);
+    git(work, "push", "--quiet", "origin", "HEAD:main");
+  }
+
+  private static void git(Path directory, String... arguments) throws Exception {
+    GitCommand.Result result = GitCommand.run(directory, arguments);
+    assertTrue(result.isSuccessful(), result.describeFailure(arguments[0]));
+  }
+
+  private static String output(Path directory, String... arguments) throws Exception {
+    GitCommand.Result result = GitCommand.run(directory, arguments);
+    assertTrue(result.isSuccessful(), result.describeFailure(arguments[0]));
+    return result.getTrimmedOutput();
+  }
+}
@@ -0,0 +1,111 @@
+package hu.zza.util.gitform;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates reproducible directory trees for the benchmarks: {@code directories} folders in a tree
+ * with a fan-out of 10, where roughly {@code density} of the folders are Git repository roots
+ * (with a minimal {@code .git} folder: {@code HEAD} and a {@code config} with an origin remote).
+ * The folders under a repository root play the role of its working tree.
+ *
+ * <p>The same arguments (and seed) always generate the same tree.
+ */
+public final class FixtureGenerator {
+  private static final int fanOut = 10;
+  private static final long defaultSeed = 20211205L;
+
+  private FixtureGenerator() {}
+
+  /**
+   * @param args
+   *     <p>[0] - the target folder (it has to be empty or missing)
+   *     <p>[1] - the number of folders
+   *     <p>[2] - the repository density (0.0 - 1.0)
+   *     <p>[3] - the seed of the random generator (optional)
+   */
+  public static void main(String[] args) throws IOException {
+    if (args.length < 3) {
+      System.err.println("usage: FixtureGenerator <target> <directories> <density> [seed]");
+      System.exit(1);
+    }
+    long seed = args.length > 3 ? Long.parseLong(args[3]) : defaultSeed;
+    int repositories =
+        generate(Path.of(args[0]), Integer.parseInt(args[1]), Double.parseDouble(args[2]), seed);
+    System.out.printf("%s: %s folders, %d repositories%n", args[0], args[1], repositories);
+  }
+
+  /**
+   * Returns the cached tree of the given shape from {@code cacheRoot}, or generates it first.
+   *
+   * @param cacheRoot the parent folder of the generated trees
+   * @param directories the number of folders
+   * @param density the repository density (0.0 - 1.0)
+   * @return the root of the tree
+   * @throws IOException if the tree cannot be generated
+   */
+  public static Path cached(Path cacheRoot, int directories, double density) throws IOException {
+    Path target = cacheRoot.resolve(String.format("tree-%d-%s", directories, density));
+    Path marker = target.resolve(".complete");
+
+    if (Files.notExists(marker)) {
+      generate(target, directories, density, defaultSeed);
+      Files.createFile(marker);
+    }
+    return target;
+  }
+
+  /**
+   * Generates a tree.
+   *
+   * @param target the root of the tree
+   * @param directories the number of folders
+   * @param density the repository density (0.0 - 1.0)
+   * @param seed the seed of the random generator
+   * @return the number of generated repositories
+   * @throws IOException if the tree cannot be generated
+   */
+  public static int generate(Path target, int directories, double density, long seed)
+      throws IOException {
+    var random = new Random(seed);
+    List<Path> folders = new ArrayList<>(directories);
+    int repositories = 0;
+    Files.createDirectories(target);
+
+    for (int i = 0; i < directories; i++) {
+      Path parent = i == 0 ? target : folders.get((i - 1) / fanOut);
+      Path folder = Files.createDirectories(parent.resolve("dir" + i));
+      folders.add(folder);
+
+      if (random.nextDouble() < density) {
+        createRepository(folder, i);
+        repositories++;
+      }
+    }
+    return repositories;
+  }
+
+  private static void createRepository(Path folder, int id) throws IOException {
+    Path gitDirectory = Files.createDirectories(folder.resolve(".git"));
+    Files.createDirectories(gitDirectory.resolve("objects/pack"));
+    Files.createDirectories(gitDirectory.resolve("refs/heads"));
+    Files.writeString(gitDirectory.resolve("HEAD"), "ref: refs/heads/main\n");
+    Files.writeString(
+        gitDirectory.resolve("config"),
+        String.join(
+            "\n",
+            "[core]",
+            "\trepositoryformatversion = 0",
+            "\tbare = false",
+            "[remote \"upstream\"]",
+            "\turl = git@github.com:upstream/project" + id + ".git",
+            "[remote \"origin\"]",
+            "\turl = git@github.com:user/project" + id + ".git",
+            "\tfetch = +refs/heads/*:refs/remotes/origin/*",
+            ""));
+  }
+}
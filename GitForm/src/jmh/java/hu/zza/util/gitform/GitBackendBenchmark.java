@@ -0,0 +1,81 @@
+package hu.zza.util.gitform;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The operations of the {@link GitBackend} implementations on the same small repository (with an
+ * upstream, a modified and an untracked file), to choose the faster one per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class GitBackendBenchmark {
+  @Param({"process", "jgit"})
+  String backendName;
+
+  @Param({"10", "1000"})
+  int files;
+
+  private GitBackend backend;
+  private Path project;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException, InterruptedException {
+    backend = GitBackend.create(backendName, new GitConfigCache());
+    Path root = Files.createTempDirectory("gitform-jmh-backend");
+    Path origin = root.resolve("origin.git");
+    project = root.resolve("project");
+
+    git(root, "init", "--quiet", "--bare", origin.toString());
+    git(root, "clone", "--quiet", origin.toString(), project.toString());
+    for (int i = 0; i < files; i++) {
+      Files.writeString(project.resolve("file" + i + ".txt"), "content " + i);
+    }
+    git(project, "add", ".");
+    git(project, "-c", "user.name=jmh", "-c", "user.email=jmh@localhost", "commit", "-qm", "init");
+    git(project, "push", "--quiet", "origin", "HEAD");
+    git(project, "branch", "--quiet", "--set-upstream-to", "origin/" + getBranch());
+    Files.writeString(project.resolve("file0.txt"), "modified");
+    Files.writeString(project.resolve("untracked.txt"), "untracked");
+  }
+
+  private String getBranch() throws IOException, InterruptedException {
+    return GitCommand.run(project, "symbolic-ref", "--short", "HEAD").getTrimmedOutput();
+  }
+
+  private static void git(Path directory, String... arguments)
+      throws IOException, InterruptedException {
+    GitCommand.Result result = GitCommand.run(directory, arguments);
+    if (!result.isSuccessful()) {
+      throw new IOException(result.describeFailure(arguments[0]));
+    }
+  }
+
+  @Benchmark
+  public RepositoryStatus status() throws IOException, InterruptedException {
+    return backend.status(project);
+  }
+
+  @Benchmark
+  public String remoteUrl() throws IOException {
+    return backend.getRemoteUrl(project, "origin");
+  }
+}
@@ -0,0 +1,50 @@
+package hu.zza.util.gitform;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Conversion of {@link GitHubProject} from and to its YAML lines. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class GitHubProjectBenchmark {
+  private GitHubProject project;
+  private List<String> lines;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    project = new GitHubProject(Path.of("group/project"), "git@github.com:user/project.git");
+    lines = project.getExportList();
+  }
+
+  @Benchmark
+  public GitHubProject parse() {
+    return GitHubProject.parse(lines.stream());
+  }
+
+  @Benchmark
+  public GitHubProject parseWithComments() {
+    return GitHubProject.parse(Stream.concat(Stream.of("# comment", ""), lines.stream()));
+  }
+
+  @Benchmark
+  public List<String> getExportList() {
+    return project.getExportList();
+  }
+}
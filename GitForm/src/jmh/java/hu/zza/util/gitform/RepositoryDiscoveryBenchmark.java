@@ -0,0 +1,89 @@
+package hu.zza.util.gitform;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Discovery of repositories (the {@code save} command without writing) on generated trees of
+ * {@link FixtureGenerator}. The trees are cached in {@code build/jmh-fixtures} (it can be changed
+ * with the {@code gitform.fixtures} system property), so only the first run pays for them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+public class RepositoryDiscoveryBenchmark {
+  @Param({"100", "10000", "100000"})
+  int directories;
+
+  @Param({"0.01", "0.1", "0.5"})
+  double density;
+
+  private Settings settings;
+  private ProjectMapper projectMapper;
+  private ScanIndex warmIndex;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    Path fixtures = Path.of(System.getProperty("gitform.fixtures", "build/jmh-fixtures"));
+    Path gitRoot = FixtureGenerator.cached(fixtures, directories, density);
+    Path home = Files.createTempDirectory("gitform-jmh");
+
+    settings =
+        new Settings(
+            home,
+            home.resolve(".git-form"),
+            home.resolve(".git-form/settings.yaml"),
+            gitRoot,
+            gitRoot.resolve("GitForm"));
+    projectMapper = new ProjectMapper(settings);
+
+    String fingerprint = createWalker().getFingerprint();
+    var coldIndex = new ScanIndex(settings.getScanIndexFile(), fingerprint);
+    projectMapper.collectProjects(createWalker(), coldIndex);
+    Files.createDirectories(settings.getSettingsPath());
+    coldIndex.save();
+    warmIndex = ScanIndex.load(settings.getScanIndexFile(), fingerprint);
+  }
+
+  private RepositoryWalker createWalker() {
+    return new RepositoryWalker(settings, new ResultReport());
+  }
+
+  @Benchmark
+  public List<Path> walkCold() {
+    return createWalker().walk();
+  }
+
+  @Benchmark
+  public List<Path> walkWithScanIndex() {
+    return createWalker().walk(warmIndex);
+  }
+
+  @Benchmark
+  public List<GitHubProject> collectProjectsCold() {
+    return projectMapper.collectProjects(createWalker(), new ScanIndex());
+  }
+
+  @Benchmark
+  public List<GitHubProject> collectProjectsWithScanIndex() {
+    return projectMapper.collectProjects(createWalker(), warmIndex);
+  }
+}
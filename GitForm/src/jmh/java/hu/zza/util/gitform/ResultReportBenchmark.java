@@ -0,0 +1,58 @@
+package hu.zza.util.gitform;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Collecting and rendering the {@link ResultReport} of a large run. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ResultReportBenchmark {
+  @Param({"100", "10000"})
+  int results;
+
+  private ResultReport filledReport;
+  private ResultReport sharedReport;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    filledReport = new ResultReport("Benchmark");
+    for (int i = 0; i < results; i++) {
+      filledReport.appendResult("/home/user/GIT/group" + i % 10 + "/project" + i);
+      if (i % 10 == 0) {
+        filledReport.appendAdditionalInfo("Cannot clone project:", "project" + i);
+      }
+    }
+  }
+
+  @Setup(Level.Iteration)
+  public void setUpIteration() {
+    sharedReport = new ResultReport("Benchmark");
+  }
+
+  @Benchmark
+  public String render() {
+    return filledReport.toString();
+  }
+
+  @Benchmark
+  @Threads(4)
+  public void appendConcurrently() {
+    sharedReport.appendResult(Thread.currentThread().getName());
+  }
+}
@@ -0,0 +1,95 @@
+package hu.zza.util.gitform;
+
+import java.io.IOException;
+import java.lang.ProcessBuilder.Redirect;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * A whole run of {@code git-form} in a new JVM: from the {@code git-form} script (compiled at every
+ * start), from the plain jar, and from the jar with its class-data-sharing archive (like {@code
+ * git-form-cds}). The commands run in an empty home folder: {@code help} prints the help, {@code
+ * save} walks an empty {@code GIT} folder. The jar and the archive are built by {@code gradle
+ * appCds}, the paths are relative to the project folder (the working directory of {@code gradle
+ * jmh}).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 20)
+public class StartupBenchmark {
+  private static final Path script = Path.of("git-form");
+  private static final Path jar = Path.of("build", "libs", "GitForm.jar");
+  private static final Path archive = Path.of("build", "libs", "GitForm.jsa");
+
+  @Param({"script", "jar", "cds"})
+  String launch;
+
+  @Param({"help", "save"})
+  String command;
+
+  private ProcessBuilder processBuilder;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    for (Path file : List.of(script, jar, archive)) {
+      if (Files.notExists(file)) {
+        throw new IOException(file.toAbsolutePath() + " is missing, run gradle appCds first.");
+      }
+    }
+    String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+    Path homePath = Files.createTempDirectory("gitform-jmh-startup");
+    Files.createDirectories(homePath.resolve("GIT"));
+    String home = "-Duser.home=" + homePath;
+    String jarPath = jar.toAbsolutePath().toString();
+
+    switch (launch) {
+      case "script":
+        processBuilder =
+            new ProcessBuilder(java, home, "--source", "11", script.toString(), command);
+        break;
+      case "jar":
+        processBuilder = new ProcessBuilder(java, home, "-jar", jarPath, command);
+        break;
+      case "cds":
+        processBuilder =
+            new ProcessBuilder(
+                java,
+                home,
+                "-Xshare:on",
+                "-XX:SharedArchiveFile=" + archive.toAbsolutePath(),
+                "-jar",
+                jarPath,
+                command);
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown launch: " + launch);
+    }
+    processBuilder.redirectOutput(Redirect.DISCARD).redirectError(Redirect.DISCARD);
+  }
+
+  @Benchmark
+  public int start() throws IOException, InterruptedException {
+    int exitCode = processBuilder.start().waitFor();
+    if (exitCode != 0) {
+      throw new IOException(launch + " has failed with exit code " + exitCode);
+    }
+    return exitCode;
+  }
+}
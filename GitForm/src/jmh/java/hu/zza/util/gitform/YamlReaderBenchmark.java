@@ -0,0 +1,60 @@
+package hu.zza.util.gitform;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/** Parsing of a single project file and of a multi-document stream with {@link YamlReader}. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class YamlReaderBenchmark {
+  @Param({"1000"})
+  int documents;
+
+  private String document;
+  private String stream;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    document = createDocument(0);
+
+    var builder = new StringBuilder();
+    for (int i = 0; i < documents; i++) {
+      builder.append("---\n").append(createDocument(i));
+    }
+    stream = builder.toString();
+  }
+
+  private static String createDocument(int id) {
+    return String.format(
+        "# project %d%nname: project%d%nlocal: group%d/project%d%n"
+            + "origin: git@github.com:user/project%d.git%n",
+        id, id, id % 10, id, id);
+  }
+
+  @Benchmark
+  public Map<String, String> parseDocument() throws YamlException {
+    return YamlReader.parse(document);
+  }
+
+  @Benchmark
+  public void parseStream(Blackhole blackhole) throws YamlException {
+    YamlReader.parse(stream, blackhole::consume);
+  }
+}
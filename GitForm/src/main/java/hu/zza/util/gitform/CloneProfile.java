@@ -0,0 +1,153 @@
+package hu.zza.util.gitform;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Describes how a project is cloned: the amount of history ({@code full}, {@code depth=N}), the
+ * partial clone filter ({@code blobless}: {@code --filter=blob:none}, {@code treeless}: {@code
+ * --filter=tree:0}), and {@code single-branch}. The text form is a comma-separated list of these
+ * options, e.g. {@code depth=1, single-branch}, and it's the value of the {@code clone} key both in
+ * {@code settings.yaml} (the default profile) and in the project YAML files.
+ *
+ * <p>At most one of {@code depth}, {@code blobless} and {@code treeless} can be given, and {@code
+ * full} can't be combined with anything.
+ */
+public final class CloneProfile {
+  public static final CloneProfile full = new CloneProfile(0, null, false);
+  private static final String depthPrefix = "depth=";
+  private static final String singleBranch = "single-branch";
+  private final int depth;
+  private final String filter;
+  private final boolean singleBranchOnly;
+
+  private CloneProfile(int depth, String filter, boolean singleBranchOnly) {
+    this.depth = depth;
+    this.filter = filter;
+    this.singleBranchOnly = singleBranchOnly;
+  }
+
+  /**
+   * Parses the text form of a profile.
+   *
+   * @param text e.g. {@code full}, {@code depth=1}, {@code blobless, single-branch}
+   * @return the parsed {@link CloneProfile}
+   * @throws IllegalArgumentException if an option is unknown, invalid or conflicting
+   */
+  public static CloneProfile parse(String text) {
+    int depth = 0;
+    String filter = null;
+    boolean singleBranchOnly = false;
+    boolean fullHistory = false;
+    int historyOptions = 0;
+
+    for (String option : text.split(",")) {
+      option = option.strip();
+
+      if ("full".equals(option)) {
+        fullHistory = true;
+      } else if (singleBranch.equals(option)) {
+        singleBranchOnly = true;
+      } else if ("blobless".equals(option)) {
+        filter = "blob:none";
+        historyOptions++;
+      } else if ("treeless".equals(option)) {
+        filter = "tree:0";
+        historyOptions++;
+      } else if (option.startsWith(depthPrefix)) {
+        depth = parseDepth(option.substring(depthPrefix.length()));
+        historyOptions++;
+      } else {
+        throw new IllegalArgumentException("Unknown clone option: " + option);
+      }
+    }
+    if (historyOptions > 1 || (fullHistory && (historyOptions > 0 || singleBranchOnly))) {
+      throw new IllegalArgumentException("Conflicting clone options: " + text.strip());
+    }
+    return fullHistory ? full : new CloneProfile(depth, filter, singleBranchOnly);
+  }
+
+  private static int parseDepth(String value) {
+    try {
+      int depth = Integer.parseInt(value.strip());
+      if (depth > 0) {
+        return depth;
+      }
+    } catch (NumberFormatException ignored) {
+      // reported below
+    }
+    throw new IllegalArgumentException("Invalid clone depth: " + value);
+  }
+
+  /** @return the options of {@code git clone}, e.g. {@code [--depth, 1, --single-branch]} */
+  public List<String> getArguments() {
+    var arguments = new ArrayList<String>();
+
+    if (depth > 0) {
+      arguments.add("--depth");
+      arguments.add(String.valueOf(depth));
+    }
+    if (filter != null) {
+      arguments.add("--filter=" + filter);
+    }
+    if (singleBranchOnly) {
+      arguments.add("--single-branch");
+    }
+    return arguments;
+  }
+
+  /** @return the depth of the history, or 0 if it's not limited */
+  public int getDepth() {
+    return depth;
+  }
+
+  /** @return the partial clone filter (e.g. {@code blob:none}), or null if there is none */
+  public String getFilter() {
+    return filter;
+  }
+
+  public boolean isSingleBranch() {
+    return singleBranchOnly;
+  }
+
+  public boolean isFull() {
+    return equals(full);
+  }
+
+  /** @return the text form, it can be parsed by {@link CloneProfile#parse(String)} */
+  @Override
+  public String toString() {
+    var options = new ArrayList<String>();
+
+    if (depth > 0) {
+      options.add(depthPrefix + depth);
+    }
+    if (filter != null) {
+      options.add("blob:none".equals(filter) ? "blobless" : "treeless");
+    }
+    if (singleBranchOnly) {
+      options.add(singleBranch);
+    }
+    return options.isEmpty() ? "full" : String.join(", ", options);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(depth, filter, singleBranchOnly);
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    CloneProfile that = (CloneProfile) o;
+    return depth == that.depth
+        && singleBranchOnly == that.singleBranchOnly
+        && Objects.equals(filter, that.filter);
+  }
+}
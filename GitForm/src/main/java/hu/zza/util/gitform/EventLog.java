@@ -0,0 +1,203 @@
+package hu.zza.util.gitform;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * A machine-readable event stream of a run in the JSON Lines format: one JSON object per line,
+ * e.g. {@code {"time":"...","event":"clone_finished","project":"B/projectB","exit":0,"ms":812}}.
+ * The events are written as they happen, so the stream can be followed live ({@code tail -f}),
+ * and it's easy to process afterwards ({@code jq}, etc.).
+ *
+ * <p>{@link EventLog#emit(String, Object...)} only puts the event into a queue, the formatting and
+ * the writing are done by a background thread. It takes every queued event at once, writes them
+ * to a buffered writer and flushes once per batch: the workers never wait for the output, and
+ * there is one write system call per batch instead of one per event.
+ *
+ * <p>{@link EventLog#disabled} discards everything, it's the default of the commands.
+ */
+public class EventLog implements AutoCloseable {
+  public static final EventLog disabled = new EventLog();
+  private static final int maxBatchSize = 1024;
+  private static final Event endOfStream = new Event(null, null);
+  private final BlockingQueue<Event> queue = new LinkedBlockingQueue<>();
+  private final Writer writer;
+  private final Thread thread;
+  private volatile IOException failure;
+  private volatile boolean closed;
+  private boolean closeRequested;
+
+  private EventLog() {
+    writer = null;
+    thread = null;
+    closed = true;
+  }
+
+  /**
+   * Starts the background writer thread. The stream is closed by {@link EventLog#close()}.
+   *
+   * @param out the target of the events
+   */
+  public EventLog(OutputStream out) {
+    writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 1 << 16);
+    thread = new Thread(this::writeEvents, "git-form-events");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  /**
+   * @param file the {@link Path} of the output (it's truncated if it exists)
+   * @return a new {@link EventLog} writing to {@code file}
+   * @throws IOException if the file cannot be opened
+   */
+  public static EventLog open(Path file) throws IOException {
+    return new EventLog(Files.newOutputStream(file));
+  }
+
+  /**
+   * Queues an event. It never blocks, and it's a no-op if the {@link EventLog} is disabled or
+   * closed.
+   *
+   * @param event the type of the event, e.g. {@code clone_started}
+   * @param fields alternating names and values; a value is written as a JSON number or boolean if
+   *     it's a {@link Number} or a {@link Boolean}, as null if it's null, and as a string otherwise
+   */
+  public void emit(String event, Object... fields) {
+    if (!closed) {
+      queue.add(new Event(event, fields));
+    }
+  }
+
+  /** @return true unless it's {@link EventLog#disabled} */
+  public boolean isEnabled() {
+    return thread != null;
+  }
+
+  /**
+   * Writes out the queued events, and closes the output. The events emitted after it are dropped.
+   * The writer thread stops accepting events after a write error too, but the error is reported
+   * only here: every call throws it, even if the writer has failed before the first one.
+   *
+   * @throws IOException if the events couldn't be written
+   */
+  @Override
+  public synchronized void close() throws IOException {
+    if (thread == null) {
+      return;
+    }
+    if (!closeRequested) {
+      closeRequested = true;
+      closed = true;
+      queue.add(endOfStream);
+      try {
+        thread.join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    if (failure != null) {
+      throw failure;
+    }
+  }
+
+  /** The loop of the writer thread: it writes and flushes the events batch by batch. */
+  private void writeEvents() {
+    var batch = new ArrayList<Event>();
+    var line = new StringBuilder();
+    boolean running = true;
+
+    try (writer) {
+      while (running) {
+        batch.add(queue.take());
+        queue.drainTo(batch, maxBatchSize - 1);
+
+        for (Event event : batch) {
+          if (event == endOfStream) {
+            running = false;
+            break;
+          }
+          line.setLength(0);
+          event.appendTo(line);
+          writer.append(line).append('\n');
+        }
+        writer.flush();
+        batch.clear();
+      }
+    } catch (IOException e) {
+      failure = e;
+      closed = true;
+      queue.clear();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * @param json the target
+   * @param text the {@link String} to append as a quoted, escaped JSON string
+   */
+  private static void appendString(StringBuilder json, String text) {
+    json.append('"');
+    for (int i = 0; i < text.length(); i++) {
+      char c = text.charAt(i);
+
+      if (c == '"' || c == '\\') {
+        json.append('\\').append(c);
+      } else if (c == '\n') {
+        json.append("\\n");
+      } else if (c == '\t') {
+        json.append("\\t");
+      } else if (c < 0x20) {
+        json.append(String.format("\\u%04x", (int) c));
+      } else {
+        json.append(c);
+      }
+    }
+    json.append('"');
+  }
+
+  /** An event waiting in the queue, it's formatted by the writer thread. */
+  private static final class Event {
+    private final Instant time = Instant.now();
+    private final String type;
+    private final Object[] fields;
+
+    private Event(String type, Object[] fields) {
+      this.type = type;
+      this.fields = fields;
+    }
+
+    private void appendTo(StringBuilder json) {
+      json.append("{\"time\":\"").append(time).append("\",\"event\":");
+      appendString(json, type);
+
+      for (int i = 0; i + 1 < fields.length; i += 2) {
+        json.append(',');
+        appendString(json, String.valueOf(fields[i]));
+        json.append(':');
+        appendValue(json, fields[i + 1]);
+      }
+      json.append('}');
+    }
+
+    private static void appendValue(StringBuilder json, Object value) {
+      if (value == null) {
+        json.append("null");
+      } else if (value instanceof Number || value instanceof Boolean) {
+        json.append(value);
+      } else {
+        appendString(json, value.toString());
+      }
+    }
+  }
+}
@@ -0,0 +1,121 @@
+package hu.zza.util.gitform;
+
+import hu.zza.util.gitform.PerOperationGitBackend.Operation;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.ServiceLoader;
+
+/**
+ * The Git operations of GitForm which have more than one implementation: clone, fetch, status and
+ * the lookup of a remote URL. The built-in {@link ProcessGitBackend} runs {@code git} processes
+ * (and reads the configs itself); other backends, e.g. the in-process {@code jgit} backend of the
+ * {@code jgit} source set, are found by {@link ServiceLoader} on the class path.
+ *
+ * <p>The backend is selected by the {@code backend} key of {@code settings.yaml}: a backend name
+ * for every operation (e.g. {@code jgit}), optionally followed by per-operation overrides, e.g.
+ * {@code process, status=jgit, remote=jgit}. So each operation can use the faster implementation.
+ *
+ * <p>An implementation must be thread-safe: the operations run in parallel on a {@link
+ * GitScheduler}.
+ */
+public interface GitBackend {
+  /** @return the name of the backend, e.g. {@code process}, as used in {@code settings.yaml} */
+  String getName();
+
+  /**
+   * Clones a repository.
+   *
+   * @param originUrl the URL of the repository
+   * @param rootPath the absolute {@link Path} of the new working tree (its parent exists)
+   * @param profile the {@link CloneProfile} of the clone
+   * @param mirror a local mirror to borrow the objects from (see {@link MirrorCache}), or null; a
+   *     backend may ignore it
+   * @return the exit value of the {@code git} process (0), or null if the backend doesn't run one
+   * @throws IOException if the clone fails (the message tells why), a {@link GitCommandException}
+   *     with the exit value if a {@code git} process has failed
+   * @throws InterruptedException if the thread is interrupted while waiting
+   */
+  Integer clone(String originUrl, Path rootPath, CloneProfile profile, Path mirror)
+      throws IOException, InterruptedException;
+
+  /**
+   * Fetches a repository from the remote of its current branch's upstream (or {@code origin}).
+   *
+   * @param rootPath the absolute {@link Path} of the working tree
+   * @throws IOException if the fetch fails
+   * @throws InterruptedException if the thread is interrupted while waiting
+   */
+  void fetch(Path rootPath) throws IOException, InterruptedException;
+
+  /**
+   * @param rootPath the absolute {@link Path} of the working tree
+   * @return the {@link RepositoryStatus} of the working tree (untracked files included)
+   * @throws IOException if the status cannot be determined
+   * @throws InterruptedException if the thread is interrupted while waiting
+   */
+  RepositoryStatus status(Path rootPath) throws IOException, InterruptedException;
+
+  /**
+   * @param projectRoot the {@link Path} of the working tree
+   * @param remoteName the name of the remote, e.g. {@code origin}
+   * @return the URL of the remote, or null if there is no such remote
+   * @throws IOException if the config cannot be read
+   */
+  String getRemoteUrl(Path projectRoot, String remoteName) throws IOException;
+
+  /**
+   * Creates the backend described by {@code specification}.
+   *
+   * @param specification e.g. {@code process}, {@code jgit} or {@code process, status=jgit}
+   * @param configCache the {@link GitConfigCache} of the {@link ProcessGitBackend}
+   * @return the selected {@link GitBackend}
+   * @throws IllegalArgumentException if the specification is malformed, or a backend is not found
+   */
+  static GitBackend create(String specification, GitConfigCache configCache) {
+    var instances = new HashMap<String, GitBackend>();
+    var backends = new EnumMap<Operation, GitBackend>(Operation.class);
+    GitBackend defaultBackend = null;
+
+    for (String entry : specification.split(",")) {
+      String[] parts = entry.split("=", 2);
+      GitBackend backend =
+          instances.computeIfAbsent(
+              parts[parts.length - 1].strip(), name -> find(name, configCache));
+
+      if (parts.length == 1) {
+        defaultBackend = backend;
+      } else {
+        backends.put(Operation.parse(parts[0].strip()), backend);
+      }
+    }
+    if (defaultBackend == null) {
+      defaultBackend =
+          instances.computeIfAbsent(
+              ProcessGitBackend.backendName, name -> new ProcessGitBackend(configCache));
+    }
+    for (Operation operation : Operation.values()) {
+      backends.putIfAbsent(operation, defaultBackend);
+    }
+    return instances.size() == 1 ? defaultBackend : new PerOperationGitBackend(backends);
+  }
+
+  /**
+   * @param name the name of a backend
+   * @param configCache the {@link GitConfigCache} of the {@link ProcessGitBackend}
+   * @return a new instance of the backend
+   * @throws IllegalArgumentException if there is no backend with {@code name}
+   */
+  private static GitBackend find(String name, GitConfigCache configCache) {
+    if (ProcessGitBackend.backendName.equals(name)) {
+      return new ProcessGitBackend(configCache);
+    }
+    for (GitBackend backend : ServiceLoader.load(GitBackend.class)) {
+      if (backend.getName().equals(name)) {
+        return backend;
+      }
+    }
+    throw new IllegalArgumentException("Unknown git backend (or not on the class path): " + name);
+  }
+}
@@ -0,0 +1,284 @@
+package hu.zza.util.gitform;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.lang.ProcessBuilder.Redirect;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Runs a {@code git} subcommand in a repository. The arguments are passed as a list (no shell, no
+ * splitting on spaces, so a path with spaces is just one argument). The standard output is either
+ * captured or discarded. Git never prompts for credentials ({@code GIT_TERMINAL_PROMPT=0}), so a
+ * private repository fails instead of blocking a worker.
+ *
+ * <p>The standard error is always drained in the background by a small shared pool of reader
+ * threads, so a chatty process never stalls on a full pipe. Only its last {@value #errorTailLines}
+ * lines are kept (a ring buffer), they explain the failure in {@link
+ * Result#describeFailure(String)}. A reader is busy until the end of its process, so the pool has
+ * as many threads as the largest {@link GitScheduler} (see {@link
+ * GitCommand#reserveDrainThreads(int)}), but at least {@value #minDrainThreads}: every worker runs
+ * one process at a time, so its standard error is drained at once. The processes started by other
+ * threads may wait in the queue of the pool; it only slows them down, as the busy readers finish
+ * with their processes. The idle readers stop after {@value #drainKeepAliveSeconds} seconds.
+ */
+public final class GitCommand {
+  private static final int errorTailLines = 10;
+  private static final int maxLineLength = 300;
+  private static final long drainTimeoutSeconds = 5;
+  private static final int minDrainThreads = 2;
+  private static final long drainKeepAliveSeconds = 30;
+  private static final Pattern safeArgument = Pattern.compile("[A-Za-z0-9_./:@%+=,^-]+");
+  private static final ThreadPoolExecutor drainPool = newDrainPool();
+
+  private GitCommand() {}
+
+  private static ThreadPoolExecutor newDrainPool() {
+    var pool =
+        new ThreadPoolExecutor(
+            minDrainThreads,
+            minDrainThreads,
+            drainKeepAliveSeconds,
+            TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(),
+            new DrainFactory());
+    pool.allowCoreThreadTimeOut(true);
+    return pool;
+  }
+
+  /**
+   * Grows the pool of the standard error readers (if it's necessary), so {@code processes}
+   * processes running at the same time are drained without waiting. It's called by {@link
+   * GitScheduler}, the pool never shrinks below the largest parallelism.
+   *
+   * @param processes the number of processes which may run at the same time
+   */
+  static void reserveDrainThreads(int processes) {
+    synchronized (drainPool) {
+      if (processes > drainPool.getMaximumPoolSize()) {
+        drainPool.setMaximumPoolSize(processes);
+        drainPool.setCorePoolSize(processes);
+      }
+    }
+  }
+
+  /** @return the current size limit of the pool of the standard error readers */
+  static int getDrainThreadLimit() {
+    return drainPool.getMaximumPoolSize();
+  }
+
+  /**
+   * Runs {@code git -C <directory> <arguments>} and waits for its end.
+   *
+   * @param directory the working directory of the command (e.g. a project root)
+   * @param arguments the subcommand and its arguments, e.g. {@code "fetch", "origin"}
+   * @return the {@link Result} with the exit value and the standard output
+   * @throws IOException if the process cannot be started
+   * @throws InterruptedException if the thread is interrupted while waiting
+   */
+  public static Result run(Path directory, String... arguments)
+      throws IOException, InterruptedException {
+    return start(directory, true, Arrays.asList(arguments)).waitFor();
+  }
+
+  /**
+   * Starts {@code git -C <directory> <arguments>} without waiting for its end.
+   *
+   * @param directory the working directory of the command
+   * @param captureOutput if false, the standard output is discarded (e.g. for {@code git clone})
+   * @param arguments the subcommand and its arguments
+   * @return the running {@link Execution}
+   * @throws IOException if the process cannot be started
+   */
+  public static Execution start(Path directory, boolean captureOutput, List<String> arguments)
+      throws IOException {
+    List<String> command = new ArrayList<>(List.of("git", "-C", directory.toString()));
+    command.addAll(arguments);
+
+    var processBuilder =
+        new ProcessBuilder(command)
+            .redirectOutput(captureOutput ? Redirect.PIPE : Redirect.DISCARD);
+    processBuilder.environment().put("GIT_TERMINAL_PROMPT", "0");
+
+    Process process = processBuilder.start();
+    process.getOutputStream().close();
+    return new Execution(process, captureOutput, command);
+  }
+
+  /**
+   * Joins the command into one line which can be pasted into a POSIX shell: an argument is quoted
+   * with {@code '} if it contains anything else than letters, digits and a few safe characters.
+   *
+   * @param command the program and its arguments
+   * @return the quoted command line, e.g. {@code git clone url '/home/user/GIT/my project'}
+   */
+  public static String toCommandLine(List<String> command) {
+    return command.stream().map(GitCommand::quote).collect(Collectors.joining(" "));
+  }
+
+  private static String quote(String argument) {
+    if (safeArgument.matcher(argument).matches()) {
+      return argument;
+    }
+    return "'" + argument.replace("'", "'\\''") + "'";
+  }
+
+  /**
+   * Keeps the last lines of {@code stream} until its end. A line longer than {@value
+   * #maxLineLength} characters is truncated.
+   *
+   * @param stream the standard error of a process
+   * @return the last {@value #errorTailLines} lines
+   * @throws IOException if the stream cannot be read
+   */
+  private static List<String> readTail(InputStream stream) throws IOException {
+    Deque<String> tail = new ArrayDeque<>(errorTailLines);
+
+    try (var reader = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8))) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        if (line.isBlank()) {
+          continue;
+        }
+        if (tail.size() == errorTailLines) {
+          tail.removeFirst();
+        }
+        tail.addLast(line.length() > maxLineLength ? line.substring(0, maxLineLength) : line);
+      }
+    }
+    return new ArrayList<>(tail);
+  }
+
+  /** A started {@link GitCommand}, its standard error is being drained in the background. */
+  public static final class Execution {
+    private final Process process;
+    private final boolean captureOutput;
+    private final List<String> command;
+    private final CompletableFuture<List<String>> errorTail;
+
+    private Execution(Process process, boolean captureOutput, List<String> command) {
+      this.process = process;
+      this.captureOutput = captureOutput;
+      this.command = command;
+      errorTail =
+          CompletableFuture.supplyAsync(
+              () -> {
+                try {
+                  return readTail(process.getErrorStream());
+                } catch (IOException e) {
+                  return List.of();
+                }
+              },
+              drainPool);
+    }
+
+    /**
+     * Reads the standard output (if it's captured), and waits for the end of the process and the
+     * draining of its standard error. A grandchild process (e.g. a credential helper daemon) can
+     * keep the standard error open, so the draining is waited for at most a few seconds.
+     *
+     * @return the {@link Result} of the process
+     * @throws IOException if the standard output cannot be read
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public Result waitFor() throws IOException, InterruptedException {
+      String output = "";
+      if (captureOutput) {
+        try (InputStream stdout = process.getInputStream()) {
+          output = new String(stdout.readAllBytes(), StandardCharsets.UTF_8);
+        }
+      }
+      int exitValue = process.waitFor();
+      List<String> errors;
+      try {
+        errors = errorTail.get(drainTimeoutSeconds, TimeUnit.SECONDS);
+      } catch (ExecutionException | TimeoutException e) {
+        errors = List.of();
+      }
+      return new Result(exitValue, output, errors, command);
+    }
+  }
+
+  /** The exit value and the outputs of a finished {@link GitCommand}. */
+  public static final class Result {
+    private final int exitValue;
+    private final String output;
+    private final List<String> errorTail;
+    private final List<String> command;
+
+    Result(int exitValue, String output, List<String> errorTail, List<String> command) {
+      this.exitValue = exitValue;
+      this.output = output;
+      this.errorTail = List.copyOf(errorTail);
+      this.command = List.copyOf(command);
+    }
+
+    public int getExitValue() {
+      return exitValue;
+    }
+
+    public boolean isSuccessful() {
+      return exitValue == 0;
+    }
+
+    public String getOutput() {
+      return output;
+    }
+
+    /** @return the output without the leading and trailing whitespace (e.g. line break) */
+    public String getTrimmedOutput() {
+      return output.strip();
+    }
+
+    /** @return the last non-blank lines of the standard error (a bounded tail) */
+    public List<String> getErrorTail() {
+      return errorTail;
+    }
+
+    /** @return the executed command line, quoted by {@link GitCommand#toCommandLine(List)} */
+    public String getCommandLine() {
+      return toCommandLine(command);
+    }
+
+    /**
+     * @param subcommand the name of the Git subcommand, e.g. {@code clone}
+     * @return a one-line description of the failure with the tail of the standard error, e.g.
+     *     {@code git clone failed (exit value 128): fatal: repository '...' not found}
+     */
+    public String describeFailure(String subcommand) {
+      String description = String.format("git %s failed (exit value %d)", subcommand, exitValue);
+      if (errorTail.isEmpty()) {
+        return description;
+      }
+      return description + ": " + String.join(" | ", errorTail);
+    }
+  }
+
+  private static class DrainFactory implements ThreadFactory {
+    private final AtomicInteger counter = new AtomicInteger();
+
+    @Override
+    public Thread newThread(Runnable runnable) {
+      var thread = new Thread(runnable, "git-form-drain-" + counter.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+}
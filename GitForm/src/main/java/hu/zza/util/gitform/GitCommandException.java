@@ -0,0 +1,23 @@
+package hu.zza.util.gitform;
+
+import java.io.IOException;
+
+/** Signals a failed Git process. The message describes the failure (see {@link GitCommand}). */
+public class GitCommandException extends IOException {
+  private static final long serialVersionUID = 1L;
+  private final int exitValue;
+
+  /**
+   * @param result the {@link GitCommand.Result} of the failed process
+   * @param subcommand the name of the Git subcommand for the message
+   */
+  public GitCommandException(GitCommand.Result result, String subcommand) {
+    super(result.describeFailure(subcommand));
+    this.exitValue = result.getExitValue();
+  }
+
+  /** @return the exit value of the failed process */
+  public int getExitValue() {
+    return exitValue;
+  }
+}
@@ -0,0 +1,467 @@
+package hu.zza.util.gitform;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A parsed Git config file. It understands sections with and without subsections ({@code [remote
+ * "origin"]}, {@code [core]}, the legacy {@code [section.subsection]}), quoted values with
+ * escapes, comments, line continuations and {@code include.path} directives (relative to the
+ * including file or to the home folder with {@code ~/}). Conditional includes ({@code includeIf})
+ * are not followed.
+ *
+ * <p>The keys are stored as {@code section.subsection.name}: the section and the name are
+ * case-insensitive (stored in lower case), the subsection is case-sensitive.
+ */
+public class GitConfig {
+  private static final int maxIncludeDepth = 10;
+  private final Map<String, List<String>> values = new HashMap<>();
+  private final List<FileStamp> files = new ArrayList<>();
+
+  private GitConfig() {}
+
+  /**
+   * Reads a Git config file and the files included by it.
+   *
+   * @param configFile the {@link Path} of the config file
+   * @return the parsed {@link GitConfig}
+   * @throws IOException if the file cannot be read, or it's malformed
+   */
+  public static GitConfig read(Path configFile) throws IOException {
+    var config = new GitConfig();
+    config.readFile(configFile, 0);
+    return config;
+  }
+
+  /**
+   * Parses the content of a Git config file without includes.
+   *
+   * @param content the text of a Git config file
+   * @return the parsed {@link GitConfig}
+   * @throws IOException if the content is malformed
+   */
+  public static GitConfig parse(String content) throws IOException {
+    var config = new GitConfig();
+    config.parse(content, null, 0);
+    return config;
+  }
+
+  /**
+   * Finds the Git directory of a working tree. If {@code .git} is a file (worktrees, submodules),
+   * it follows its {@code gitdir:} line.
+   *
+   * @param projectRoot {@link Path} to the project root folder
+   * @return the {@link Path} of the Git directory
+   * @throws IOException if {@code .git} is missing or it's an invalid gitdir file
+   */
+  public static Path findGitDirectory(Path projectRoot) throws IOException {
+    Path dotGit = projectRoot.resolve(".git");
+
+    if (Files.isDirectory(dotGit)) {
+      return dotGit;
+    }
+    String content = Files.readString(dotGit).strip();
+    if (!content.startsWith("gitdir:")) {
+      throw new IOException("Invalid gitdir file: " + dotGit);
+    }
+    return projectRoot.resolve(content.substring(7).strip()).normalize();
+  }
+
+  /**
+   * Finds the config file of a working tree. It follows the gitdir indirection and the {@code
+   * commondir} of linked worktrees, whose config is shared with the main repository.
+   *
+   * @param projectRoot {@link Path} to the project root folder
+   * @return the {@link Path} of the Git config
+   * @throws IOException if the Git directory cannot be found
+   */
+  public static Path findConfigFile(Path projectRoot) throws IOException {
+    return findCommonDirectory(projectRoot).resolve("config");
+  }
+
+  /**
+   * Finds the common Git directory of a working tree (with the config and the refs). It's the Git
+   * directory itself, except for linked worktrees, where it's given by {@code commondir}.
+   *
+   * @param projectRoot {@link Path} to the project root folder
+   * @return the {@link Path} of the common Git directory
+   * @throws IOException if the Git directory cannot be found
+   */
+  public static Path findCommonDirectory(Path projectRoot) throws IOException {
+    Path dotGit = projectRoot.resolve(".git");
+
+    if (Files.isDirectory(dotGit)) {
+      return dotGit;
+    }
+    Path gitDirectory = findGitDirectory(projectRoot);
+    Path commonDirFile = gitDirectory.resolve("commondir");
+
+    if (Files.exists(commonDirFile)) {
+      return gitDirectory.resolve(Files.readString(commonDirFile).strip()).normalize();
+    }
+    return gitDirectory;
+  }
+
+  /**
+   * @param key {@code section.subsection.name} or {@code section.name}
+   * @return the last value of {@code key}, or null
+   */
+  public String get(String key) {
+    List<String> list = values.get(normalizeKey(key));
+    return list == null ? null : list.get(list.size() - 1);
+  }
+
+  /**
+   * @param key {@code section.subsection.name} or {@code section.name}
+   * @return every value of {@code key} in order
+   */
+  public List<String> getAll(String key) {
+    return values.getOrDefault(normalizeKey(key), List.of());
+  }
+
+  /**
+   * Returns the URL of a remote. If there are more URLs, the first one is used (for fetching) as
+   * Git does.
+   *
+   * @param remoteName the name of the remote, e.g. {@code origin}
+   * @return the URL of the remote or null
+   */
+  public String getRemoteUrl(String remoteName) {
+    List<String> urls = values.get("remote." + remoteName + ".url");
+    return urls == null ? null : urls.get(0);
+  }
+
+  /** @return the stamps of the config file and every included file */
+  public List<FileStamp> getFiles() {
+    return files;
+  }
+
+  private static String normalizeKey(String key) {
+    int first = key.indexOf('.');
+    int last = key.lastIndexOf('.');
+    return key.substring(0, first).toLowerCase(Locale.ROOT)
+        + key.substring(first, last + 1)
+        + key.substring(last + 1).toLowerCase(Locale.ROOT);
+  }
+
+  private void readFile(Path configFile, int depth) throws IOException {
+    files.add(FileStamp.of(configFile));
+    parse(Files.readString(configFile, StandardCharsets.UTF_8), configFile, depth);
+  }
+
+  private void put(String key, String value, Path file, int depth) throws IOException {
+    values.computeIfAbsent(key, k -> new ArrayList<>(1)).add(value);
+
+    if (file != null && "include.path".equals(key)) {
+      include(file, value, depth);
+    }
+  }
+
+  private void include(Path file, String includePath, int depth) throws IOException {
+    if (depth >= maxIncludeDepth) {
+      throw new IOException("Too deep include in " + file);
+    }
+    Path included =
+        includePath.startsWith("~/")
+            ? Path.of(System.getProperty("user.home")).resolve(includePath.substring(2))
+            : file.getParent().resolve(includePath);
+
+    if (Files.isRegularFile(included)) {
+      readFile(included, depth + 1);
+    }
+  }
+
+  /**
+   * A small, hand-written scanner for the Git config syntax.
+   *
+   * @param text the content of the config
+   * @param file the {@link Path} of the config (for includes and error messages), it can be null
+   * @param depth the include depth of {@code file}
+   * @throws IOException if the content is malformed
+   */
+  private void parse(String text, Path file, int depth) throws IOException {
+    var scanner = new Scanner(text, file);
+    String section = null;
+
+    while (scanner.skipBlank()) {
+      char c = scanner.peek();
+
+      if (c == '#' || c == ';') {
+        scanner.skipLine();
+      } else if (c == '[') {
+        section = scanner.readSectionHeader();
+      } else {
+        if (section == null) {
+          throw scanner.error("Key outside of section");
+        }
+        String name = scanner.readName();
+        put(section + "." + name, scanner.readValue(), file, depth);
+      }
+    }
+  }
+
+  /** The modification time and the size of a config file at the time of reading. */
+  public static final class FileStamp {
+    private final Path path;
+    private final long modified;
+    private final long size;
+
+    private FileStamp(Path path, long modified, long size) {
+      this.path = path;
+      this.modified = modified;
+      this.size = size;
+    }
+
+    /**
+     * @param path the {@link Path} of a file
+     * @return the current {@link FileStamp} of the file
+     * @throws IOException if the attributes cannot be read
+     */
+    public static FileStamp of(Path path) throws IOException {
+      var attributes = Files.readAttributes(path, BasicFileAttributes.class);
+      return new FileStamp(
+          path, attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS), attributes.size());
+    }
+
+    /**
+     * @param path the {@link Path} of a file
+     * @param modified its modification time in nanoseconds
+     * @param size its size
+     * @return a {@link FileStamp} recorded earlier (e.g. by {@link ScanIndex})
+     */
+    static FileStamp of(Path path, long modified, long size) {
+      return new FileStamp(path, modified, size);
+    }
+
+    public Path getPath() {
+      return path;
+    }
+
+    public long getModified() {
+      return modified;
+    }
+
+    public long getSize() {
+      return size;
+    }
+
+    /** @return true if the file still exists with the same modification time and size */
+    public boolean isCurrent() {
+      try {
+        var attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        return attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS) == modified
+            && attributes.size() == size;
+      } catch (IOException e) {
+        return false;
+      }
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(path, modified, size);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      FileStamp that = (FileStamp) o;
+      return modified == that.modified && size == that.size && Objects.equals(path, that.path);
+    }
+  }
+
+  private static final class Scanner {
+    private final String text;
+    private final Path file;
+    private int position;
+
+    Scanner(String text, Path file) {
+      this.text = text;
+      this.file = file;
+    }
+
+    /** @return false at the end of the text */
+    boolean skipBlank() {
+      while (position < text.length() && Character.isWhitespace(text.charAt(position))) {
+        position++;
+      }
+      return position < text.length();
+    }
+
+    char peek() {
+      return text.charAt(position);
+    }
+
+    void skipLine() {
+      while (position < text.length() && text.charAt(position) != '\n') {
+        position++;
+      }
+    }
+
+    /** @return {@code section} or {@code section.subsection} */
+    String readSectionHeader() throws IOException {
+      position++;
+      int start = position;
+      while (position < text.length() && isNameChar(text.charAt(position), true)) {
+        position++;
+      }
+      String section = text.substring(start, position).toLowerCase(Locale.ROOT);
+      if (section.isEmpty()) {
+        throw error("Empty section name");
+      }
+      skipSpaces();
+
+      if (position < text.length() && text.charAt(position) == '"') {
+        section += "." + readSubsection();
+        skipSpaces();
+      }
+      if (position >= text.length() || text.charAt(position) != ']') {
+        throw error("Unterminated section header");
+      }
+      position++;
+      return section;
+    }
+
+    private String readSubsection() throws IOException {
+      var subsection = new StringBuilder();
+      position++;
+
+      while (position < text.length()) {
+        char c = text.charAt(position++);
+        if (c == '"') {
+          return subsection.toString();
+        }
+        if (c == '\n') {
+          break;
+        }
+        if (c == '\\' && position < text.length()) {
+          c = text.charAt(position++);
+        }
+        subsection.append(c);
+      }
+      throw error("Unterminated subsection");
+    }
+
+    String readName() throws IOException {
+      int start = position;
+      while (position < text.length() && isNameChar(text.charAt(position), false)) {
+        position++;
+      }
+      if (start == position) {
+        throw error("Invalid key");
+      }
+      return text.substring(start, position).toLowerCase(Locale.ROOT);
+    }
+
+    /** @return the value after {@code =}, or {@code true} for a key without value */
+    String readValue() throws IOException {
+      skipSpaces();
+      if (position >= text.length() || text.charAt(position) != '=') {
+        int end = position;
+        skipLine();
+        String rest = text.substring(end, position).strip();
+        if (!rest.isEmpty() && rest.charAt(0) != '#' && rest.charAt(0) != ';') {
+          throw error("Missing '='");
+        }
+        return "true";
+      }
+      position++;
+      skipSpaces();
+
+      var value = new StringBuilder();
+      int trimmedLength = 0;
+      boolean quoted = false;
+
+      while (position < text.length()) {
+        char c = text.charAt(position++);
+
+        if (c == '\n') {
+          if (quoted) {
+            position--;
+            throw error("Unterminated quote");
+          }
+          break;
+        } else if (c == '\\') {
+          if (position >= text.length()) {
+            throw error("Unfinished escape");
+          }
+          char escaped = text.charAt(position++);
+          if (escaped == '\r' && position < text.length() && text.charAt(position) == '\n') {
+            position++;
+            continue;
+          }
+          if (escaped == '\n') {
+            continue;
+          }
+          value.append(unescape(escaped));
+          trimmedLength = value.length();
+        } else if (c == '"') {
+          quoted = !quoted;
+          trimmedLength = value.length();
+        } else if (!quoted && (c == '#' || c == ';')) {
+          skipLine();
+          break;
+        } else {
+          value.append(c);
+          if (quoted || !Character.isWhitespace(c)) {
+            trimmedLength = value.length();
+          }
+        }
+      }
+      value.setLength(trimmedLength);
+      return value.toString();
+    }
+
+    private char unescape(char c) throws IOException {
+      switch (c) {
+        case 'n':
+          return '\n';
+        case 't':
+          return '\t';
+        case 'b':
+          return '\b';
+        case '"':
+        case '\\':
+          return c;
+        default:
+          throw error("Invalid escape: \\" + c);
+      }
+    }
+
+    private void skipSpaces() {
+      while (position < text.length()
+          && (text.charAt(position) == ' ' || text.charAt(position) == '\t')) {
+        position++;
+      }
+    }
+
+    private boolean isNameChar(char c, boolean section) {
+      return Character.isLetterOrDigit(c) || c == '-' || (section && c == '.');
+    }
+
+    IOException error(String message) {
+      int line = 1;
+      for (int i = 0; i < Math.min(position, text.length()); i++) {
+        if (text.charAt(i) == '\n') {
+          line++;
+        }
+      }
+      return new IOException(
+          String.format("%s at line %d%s", message, line, file == null ? "" : " of " + file));
+    }
+  }
+}
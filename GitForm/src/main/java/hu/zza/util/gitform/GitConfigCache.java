@@ -0,0 +1,45 @@
+package hu.zza.util.gitform;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A thread-safe cache of parsed {@link GitConfig} files. An entry is valid while the config file
+ * and every file included by it have the same modification time and size as at the time of
+ * parsing, so an unchanged config is never read twice.
+ */
+public class GitConfigCache {
+  private final Map<Path, GitConfig> configs = new ConcurrentHashMap<>();
+  private final LongAdder readCount = new LongAdder();
+
+  /**
+   * Returns the cached {@link GitConfig} of {@code configFile}, or reads it if it has changed (or
+   * it's not cached yet).
+   *
+   * @param configFile the {@link Path} of a Git config file
+   * @return the parsed {@link GitConfig}
+   * @throws IOException if the file cannot be read, or it's malformed
+   */
+  public GitConfig get(Path configFile) throws IOException {
+    GitConfig config = configs.get(configFile);
+
+    if (config == null || !config.getFiles().stream().allMatch(GitConfig.FileStamp::isCurrent)) {
+      config = GitConfig.read(configFile);
+      readCount.increment();
+      configs.put(configFile, config);
+    }
+    return config;
+  }
+
+  /** @return the number of config files read (cache misses) since the creation of the cache */
+  public long getReadCount() {
+    return readCount.sum();
+  }
+
+  public void clear() {
+    configs.clear();
+  }
+}
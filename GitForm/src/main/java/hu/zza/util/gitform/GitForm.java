@@ -1,5 +1,8 @@
 package hu.zza.util.gitform;
 
+import java.io.IOException;
+import java.nio.file.Path;
+
 public class GitForm {
   private static final Settings settings = new Settings();
 
@@ -36,25 +39,173 @@ public class GitForm {
    *     <p>[0] - mode:
    *     <p>save (the projects to GitForm folder as YAML files)
    *     <p>load (build everything from YAMLs of GitForm folder)
+   *     <p>sync (like load, but fetch and fast-forward the existing projects too)
+   *     <p>status (check the status of every project in parallel, with cache)
+   *     <p>watch (keep the GitForm folder current: update the YAMLs of the changed projects)
+   *     <p>daemon (serve save, load, sync and status from a resident process, JDK 16+)
+   *     <p>stop (stop the daemon)
+   *     <p>pack (convert the YAMLs of GitForm folder into one manifest file)
+   *     <p>unpack (convert the manifest file into YAMLs of GitForm folder)
+   *     <p>[1..] - options:
+   *     <p>--full (save: rescan {@code gitRoot} without the scan index of the previous save)
+   *     <p>--fetch (status: fetch every project first)
+   *     <p>--full (status: ignore the cached results)
+   *     <p>--watch (load: keep watching the GitForm folder, and load the new project files as
+   *     soon as they arrive)
+   *     <p>--events &lt;file|-&gt; (save, load, sync, watch: write JSON Lines events to the file,
+   *     or to the standard output if it's {@code -}, then the summary goes to the standard error)
    */
   public static void main(String[] args) {
     settings.init();
-    System.out.println();
 
+    try (EventLog events = openEventLog(args)) {
+      System.out.println();
+      run(args, events);
+    } catch (IOException e) {
+      System.err.printf("Cannot write events: %s%n", e);
+    }
+  }
+
+  /**
+   * @param args the command line arguments
+   * @param events the {@link EventLog} of the run (or {@link EventLog#disabled})
+   */
+  private static void run(String[] args, EventLog events) {
     if (args.length == 0) {
       printHelp();
 
     } else if ("save".equals(args[0])) {
-      new ProjectMapper(settings).save();
+      new ProjectMapper(settings, new ResultReport(), events).save(hasOption(args, "--full"));
+
+    } else if ("load".equals(args[0]) && hasOption(args, "--watch")) {
+      loadAndWatch(events);
 
     } else if ("load".equals(args[0])) {
-      new ProjectBuilder(settings).load();
+      new ProjectBuilder(settings, new ResultReport(), events).load();
+
+    } else if ("sync".equals(args[0])) {
+      new ProjectBuilder(settings, new ResultReport(), events).sync();
+
+    } else if ("status".equals(args[0])) {
+      new StatusChecker(settings).status(hasOption(args, "--fetch"), hasOption(args, "--full"));
+
+    } else if ("watch".equals(args[0])) {
+      watch(events);
+
+    } else if ("daemon".equals(args[0])) {
+      runDaemonClass("GitFormDaemon", args);
+
+    } else if ("stop".equals(args[0])) {
+      runDaemonClass("GitFormClient", args);
+
+    } else if ("pack".equals(args[0])) {
+      new ManifestConverter(settings).pack();
+
+    } else if ("unpack".equals(args[0])) {
+      new ManifestConverter(settings).unpack();
 
     } else {
       printHelp();
     }
   }
 
+  /**
+   * Runs the {@link ProjectWatcher} until the process is stopped.
+   *
+   * @param events the {@link EventLog} of the run (or {@link EventLog#disabled})
+   */
+  private static void watch(EventLog events) {
+    try {
+      new ProjectWatcher(settings, new ResultReport(), events).watch();
+    } catch (IOException e) {
+      System.err.printf("Cannot watch projects: %s%n", e);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Runs {@link ProjectBuilder#loadAndWatch()} until the process is stopped.
+   *
+   * @param events the {@link EventLog} of the run (or {@link EventLog#disabled})
+   */
+  private static void loadAndWatch(EventLog events) {
+    try {
+      new ProjectBuilder(settings, new ResultReport(), events).loadAndWatch();
+    } catch (IOException e) {
+      System.err.printf("Cannot watch project files: %s%n", e);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Runs the main method of a class of the {@code daemon} source set. It's looked up by reflection,
+   * because it needs JDK 16 (for Unix domain sockets), while the rest of GitForm runs on Java 11.
+   *
+   * @param simpleName the simple name of the class, e.g. {@code GitFormDaemon}
+   * @param args the command line arguments
+   */
+  private static void runDaemonClass(String simpleName, String[] args) {
+    try {
+      Class.forName(GitForm.class.getPackageName() + "." + simpleName)
+          .getMethod("main", String[].class)
+          .invoke(null, (Object) args);
+    } catch (ReflectiveOperationException | LinkageError e) {
+      System.err.printf("Cannot run the daemon (it needs JDK 16 or newer): %s%n", e);
+    }
+  }
+
+  /**
+   * Opens the target of {@code --events}. If it's {@code -}, the events are written to the standard
+   * output, so everything else is redirected to the standard error (the stream is pure JSON Lines).
+   *
+   * @param args the command line arguments
+   * @return the {@link EventLog} of the run, or {@link EventLog#disabled} without {@code --events}
+   * @throws IOException if the file cannot be opened
+   */
+  private static EventLog openEventLog(String[] args) throws IOException {
+    String target = getOptionValue(args, "--events");
+
+    if (target == null) {
+      return EventLog.disabled;
+    }
+    if ("-".equals(target)) {
+      EventLog events = new EventLog(System.out);
+      System.setOut(System.err);
+      return events;
+    }
+    return EventLog.open(Path.of(target));
+  }
+
+  /**
+   * @param args the command line arguments
+   * @param option the option to look for (after the command)
+   * @return the argument following {@code option}, or null if there is none
+   */
+  private static String getOptionValue(String[] args, String option) {
+    for (int i = 1; i + 1 < args.length; i++) {
+      if (option.equals(args[i])) {
+        return args[i + 1];
+      }
+    }
+    return null;
+  }
+
+  /**
+   * @param args the command line arguments
+   * @param option the option to look for (after the command)
+   * @return true if {@code option} is present
+   */
+  private static boolean hasOption(String[] args, String option) {
+    for (int i = 1; i < args.length; i++) {
+      if (option.equals(args[i])) {
+        return true;
+      }
+    }
+    return false;
+  }
+
   /** Prints help info about GitForm. */
   private static void printHelp() {
     System.out.printf("usage: git-form <command>%n%n");
@@ -63,6 +214,20 @@ public class GitForm {
     String commandPattern = "\t%s\t\t%s%n";
     System.out.printf(commandPattern, "save", "saves the projects to GitForm folder as YAML files");
     System.out.printf(commandPattern, "load", "builds everything from YAMLs of GitForm folder");
+    System.out.printf(commandPattern, "sync", "like load, but fast-forwards existing projects too");
+    System.out.printf(commandPattern, "status", "shows the status of every project in parallel");
+    System.out.printf(commandPattern, "watch", "keeps GitForm folder current as projects change");
+    System.out.printf(commandPattern, "daemon", "serves save/load/sync/status warm (JDK 16+)");
+    System.out.printf(commandPattern, "stop", "stops the daemon");
+    System.out.printf(commandPattern, "pack", "converts the YAMLs of GitForm folder to a manifest");
+    System.out.printf(commandPattern, "unpack", "converts the manifest to YAMLs of GitForm folder");
+    System.out.printf("%noptions:%n");
+    System.out.printf(commandPattern, "--full", "save: rescans GIT folder without the scan index");
+    System.out.printf(commandPattern, "--fetch", "status: fetches every project first");
+    System.out.printf(commandPattern, "--full", "status: ignores the cached results");
+    System.out.printf(commandPattern, "--watch", "load: keeps loading new YAMLs as they arrive");
+    System.out.printf("\t%s\t%s%n", "--events", "save/load/sync/watch: streams JSON Lines");
+    System.out.printf(commandPattern, "", "events to a file (or - for stdout) as they happen");
     System.out.printf("%nMore info: https://zza.hu/_util/GitForm%n%n");
   }
 }
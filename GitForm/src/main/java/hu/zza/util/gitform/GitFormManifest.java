@@ -0,0 +1,218 @@
+package hu.zza.util.gitform;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * The consolidated GitForm format: every {@link GitHubProject} in one file ({@code
+ * gitFormRoot/projects.gitform}) instead of one YAML file per project.
+ *
+ * <p>The file starts with a header with the format version, the number of projects and an index
+ * line per project (the offset and the length of its document in bytes, relative to the end of
+ * the header). The header is followed by the projects, every one of them is a simple YAML
+ * dictionary (the same as a per-file project YAML) after a {@code ---} line, so the whole file is
+ * a multi-document YAML stream as well:
+ *
+ * <pre>
+ * gitform-manifest: 1
+ * count: 2
+ * index: 4 59
+ * index: 67 61
+ * ---
+ * name: projectA
+ * local: projectA
+ * origin: git@github.com:user/projectA.git
+ * ---
+ * name: projectB
+ * local: B/projectB
+ * origin: git@github.com:user/projectB.git
+ * </pre>
+ */
+public interface GitFormManifest {
+  String fileName = "projects.gitform";
+  String versionKey = "gitform-manifest";
+  String version = "1";
+  String countKey = "count";
+  String indexKey = "index";
+  String separator = "---";
+
+  /**
+   * Reads a manifest file. The file is memory-mapped and parsed in one pass.
+   *
+   * @param manifestFile the {@link Path} of the manifest
+   * @return {@link List<GitHubProject>} in the order of the manifest
+   * @throws IOException if the file cannot be read, or it's not a valid manifest
+   */
+  static List<GitHubProject> read(Path manifestFile) throws IOException {
+    try (FileChannel channel = FileChannel.open(manifestFile, StandardOpenOption.READ)) {
+      return parse(channel.map(MapMode.READ_ONLY, 0, channel.size()));
+    }
+  }
+
+  /**
+   * Reads the project documents of a manifest file without creating {@link GitHubProject
+   * instances}, so the entries can be validated one by one.
+   *
+   * @param manifestFile the {@link Path} of the manifest
+   * @return {@link List} of the key-value pairs of the projects in the order of the manifest
+   * @throws IOException if the file cannot be read, or it's not a valid manifest
+   */
+  static List<Map<String, String>> readDocuments(Path manifestFile) throws IOException {
+    try (FileChannel channel = FileChannel.open(manifestFile, StandardOpenOption.READ)) {
+      return parseDocuments(channel.map(MapMode.READ_ONLY, 0, channel.size()));
+    }
+  }
+
+  /**
+   * Parses a manifest from a buffer (from its position to its limit).
+   *
+   * @param buffer a {@link ByteBuffer} with the UTF-8 encoded manifest
+   * @return {@link List<GitHubProject>} in the order of the manifest
+   * @throws IOException if it's not a valid manifest
+   */
+  static List<GitHubProject> parse(ByteBuffer buffer) throws IOException {
+    try {
+      return parseDocuments(buffer).stream().map(GitHubProject::parse).collect(Collectors.toList());
+    } catch (IllegalArgumentException e) {
+      throw new IOException("Invalid manifest entry: " + e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Parses the project documents of a manifest from a buffer (from its position to its limit).
+   *
+   * @param buffer a {@link ByteBuffer} with the UTF-8 encoded manifest
+   * @return {@link List} of the key-value pairs of the projects in the order of the manifest
+   * @throws IOException if it's not a valid manifest
+   */
+  static List<Map<String, String>> parseDocuments(ByteBuffer buffer) throws IOException {
+    var header = new ArrayList<String>();
+    int position = buffer.position();
+
+    while (position < buffer.limit()) {
+      int end = lineEnd(buffer, position);
+      String line = decode(buffer, position, end).toString().strip();
+
+      if (separator.equals(line)) {
+        break;
+      }
+      header.add(line);
+      position = Math.min(end + 1, buffer.limit());
+    }
+    var map = YamlReader.parse(String.join("\n", header));
+
+    if (!version.equals(map.get(versionKey))) {
+      throw new IOException("Unsupported manifest version: " + map.get(versionKey));
+    }
+    String countValue = map.getOrDefault(countKey, "0");
+    int count = parseHeaderNumber(countValue, countKey + ": " + countValue);
+    var documents = new ArrayList<Map<String, String>>(count);
+
+    for (String line : header) {
+      if (line.startsWith(indexKey + ": ")) {
+        String[] fields = line.substring(indexKey.length() + 2).split(" ");
+        if (fields.length != 2) {
+          throw new IOException("Invalid manifest header: " + line);
+        }
+        long offset = position + (long) parseHeaderNumber(fields[0], line);
+        long length = parseHeaderNumber(fields[1], line);
+
+        if (offset + length > buffer.limit()) {
+          throw new IOException("Manifest index out of bounds: " + line);
+        }
+        documents.add(YamlReader.parse(decode(buffer, (int) offset, (int) (offset + length))));
+      }
+    }
+    if (documents.size() != count) {
+      throw new IOException(
+          String.format("Manifest index has %d entries instead of %d", documents.size(), count));
+    }
+    return documents;
+  }
+
+  /**
+   * @param value a number of the manifest header
+   * @param line the header line of {@code value} for the error message
+   * @return the parsed, non-negative number
+   * @throws IOException if {@code value} is not a non-negative integer
+   */
+  private static int parseHeaderNumber(String value, String line) throws IOException {
+    try {
+      int number = Integer.parseInt(value.strip());
+      if (number >= 0) {
+        return number;
+      }
+    } catch (NumberFormatException ignored) {
+      // Reported below.
+    }
+    throw new IOException("Invalid manifest header: " + line);
+  }
+
+  /**
+   * Writes the documents into a manifest file atomically (through a temporary file).
+   *
+   * @param manifestFile the {@link Path} of the manifest
+   * @param projects the {@link GitHubProject projects} to write
+   * @throws IOException if the file cannot be written
+   */
+  static void write(Path manifestFile, Collection<GitHubProject> projects) throws IOException {
+    Path tmpFile = Files.createTempFile(manifestFile.getParent(), "projects-", ".tmp");
+
+    try (OutputStream out = Files.newOutputStream(tmpFile)) {
+      write(out, projects);
+    }
+    Files.move(
+        tmpFile, manifestFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+  }
+
+  /**
+   * Writes the projects as a manifest.
+   *
+   * @param out the {@link OutputStream} to write to
+   * @param projects the {@link GitHubProject projects} to write
+   * @throws IOException if {@code out} throws
+   */
+  static void write(OutputStream out, Collection<GitHubProject> projects) throws IOException {
+    var body = new ByteArrayOutputStream();
+    var header = new StringBuilder();
+    header.append(String.format("%s: %s\n", versionKey, version));
+    header.append(String.format("%s: %d\n", countKey, projects.size()));
+
+    for (GitHubProject project : projects) {
+      body.write((separator + "\n").getBytes(StandardCharsets.UTF_8));
+      byte[] document =
+          (String.join("\n", project.getExportList()) + "\n").getBytes(StandardCharsets.UTF_8);
+      header.append(String.format("%s: %d %d\n", indexKey, body.size(), document.length));
+      body.write(document);
+    }
+    out.write(header.toString().getBytes(StandardCharsets.UTF_8));
+    body.writeTo(out);
+  }
+
+  private static int lineEnd(ByteBuffer buffer, int from) {
+    int position = from;
+    while (position < buffer.limit() && buffer.get(position) != '\n') {
+      position++;
+    }
+    return position;
+  }
+
+  private static CharBuffer decode(ByteBuffer buffer, int from, int to) {
+    return StandardCharsets.UTF_8.decode(buffer.duplicate().position(from).limit(to));
+  }
+}
@@ -4,32 +4,46 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.OpenOption;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.function.Consumer;
 import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 /**
  * Simple representation of a GitHub project ({@code originUrl}) with an arbitrary project name
  * ({@code projectName}) and its local {@link Path path} ({@code projectRoot}) relative to the
- * user's local GitHub root folder.
+ * user's local GitHub root folder. Optionally, it has a {@link CloneProfile} ({@code clone} key),
+ * otherwise the default profile of {@link Settings} is used.
  */
 public class GitHubProject {
   private static final UnaryOperator<String> nameExtractor =
       gitHubUrl -> gitHubUrl.substring(gitHubUrl.lastIndexOf('/') + 1, gitHubUrl.length() - 4);
+  private static final List<String> requiredKeys = List.of("name", "local", "origin");
+  private static final String cloneKey = "clone";
 
   private final String projectName;
   private final Path projectRoot;
   private final String originUrl;
+  private final CloneProfile cloneProfile;
 
   public GitHubProject(Path projectRoot, String originUrl) {
     this(nameExtractor.apply(originUrl), projectRoot, originUrl);
   }
 
   public GitHubProject(String projectName, Path projectRoot, String originUrl) {
+    this(projectName, projectRoot, originUrl, null);
+  }
+
+  public GitHubProject(
+      String projectName, Path projectRoot, String originUrl, CloneProfile cloneProfile) {
     this.projectName = projectName.strip();
     this.projectRoot = projectRoot;
     this.originUrl = originUrl.strip();
+    this.cloneProfile = cloneProfile;
   }
 
   /**
@@ -37,12 +51,23 @@ public class GitHubProject {
    *
    * @param projectInfoFile the {@link Path path} of the YAML file to parse
    * @return {@link GitHubProject}
-   * @throws IOException if {@code Files.lines(projectInfoFile)} throws
+   * @throws IOException if {@link YamlReader#parse(Path)} throws
    */
   public static GitHubProject parse(Path projectInfoFile) throws IOException {
-    try (Stream<String> lines = Files.lines(projectInfoFile)) {
-      return parse(lines);
-    }
+    return parse(YamlReader.parse(projectInfoFile));
+  }
+
+  /**
+   * Parses a multi-document YAML file, every document is a {@link GitHubProject}.
+   *
+   * @param projectInfoFile the {@link Path path} of the YAML file to parse
+   * @return {@link List<GitHubProject>} in the order of the documents
+   * @throws IOException if {@link YamlReader#parse(CharSequence, Consumer)} throws
+   */
+  public static List<GitHubProject> parseAll(Path projectInfoFile) throws IOException {
+    var projects = new ArrayList<GitHubProject>();
+    YamlReader.parse(YamlReader.read(projectInfoFile), map -> projects.add(parse(map)));
+    return projects;
   }
 
   /**
@@ -53,8 +78,39 @@ public class GitHubProject {
    * @return {@link GitHubProject}
    */
   public static GitHubProject parse(Stream<String> stringEntries) {
-    var map = YamlReader.parse(stringEntries);
-    return new GitHubProject(map.get("name"), Path.of(map.get("local")), map.get("origin"));
+    return parse(YamlReader.parse(stringEntries));
+  }
+
+  /**
+   * Creates a {@link GitHubProject} from a parsed YAML dictionary. The necessary keys are: name,
+   * local, origin. The {@code clone} key ({@link CloneProfile}) is optional.
+   *
+   * @param map the key-value pairs of a project document
+   * @return {@link GitHubProject}
+   * @throws IllegalArgumentException if a necessary key is missing, or the clone profile is invalid
+   */
+  public static GitHubProject parse(Map<String, String> map) {
+    List<String> missingKeys = getMissingKeys(map);
+
+    if (!missingKeys.isEmpty()) {
+      throw new IllegalArgumentException("Missing key(s): " + String.join(", ", missingKeys));
+    }
+    String clone = map.get(cloneKey);
+    return new GitHubProject(
+        map.get("name"),
+        Path.of(map.get("local")),
+        map.get("origin"),
+        clone == null || clone.isBlank() ? null : CloneProfile.parse(clone));
+  }
+
+  /**
+   * @param map the key-value pairs of a project document
+   * @return the necessary keys (name, local, origin) which are missing or blank in {@code map}
+   */
+  public static List<String> getMissingKeys(Map<String, String> map) {
+    return requiredKeys.stream()
+        .filter(key -> map.get(key) == null || map.get(key).isBlank())
+        .collect(Collectors.toList());
   }
 
   /**
@@ -62,9 +118,26 @@ public class GitHubProject {
    * Files#write(Path, Iterable, OpenOption...)}
    *
    * @return {@link List <String>} with every field in a simple YAML dictionary format: "key: value"
+   *     (the clone profile only if it's set)
    */
   public List<String> getExportList() {
-    return List.of("name: " + projectName, "local: " + projectRoot, "origin: " + originUrl);
+    var lines =
+        new ArrayList<>(
+            List.of("name: " + projectName, "local: " + projectRoot, "origin: " + originUrl));
+    if (cloneProfile != null) {
+      lines.add(cloneKey + ": " + cloneProfile);
+    }
+    return lines;
+  }
+
+  /**
+   * Returns the file name of the project in the per-file GitForm layout: {@code
+   * <projectName>_<hashCode>.yaml}
+   *
+   * @return the file name of the project YAML
+   */
+  public String getFileName() {
+    return String.format("%s_%d.yaml", projectName, hashCode());
   }
 
   @Override
@@ -95,4 +168,9 @@ public class GitHubProject {
   public String getOriginUrl() {
     return originUrl;
   }
+
+  /** @return the {@link CloneProfile} of the project, or null if it's not set */
+  public CloneProfile getCloneProfile() {
+    return cloneProfile;
+  }
 }
@@ -0,0 +1,83 @@
+package hu.zza.util.gitform;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A bounded scheduler for Git work (mostly subprocesses like {@code git clone}). At most {@code
+ * parallelism} tasks run at the same time, the rest wait in a FIFO work queue. Every submitted task
+ * gets a {@link CompletableFuture}, so the caller can register completion callbacks instead of
+ * polling.
+ *
+ * <p>The worker threads are daemon threads: an unfinished scheduler never keeps the JVM alive.
+ * Every worker may run a {@link GitCommand} process, so the pool of its standard error readers is
+ * grown to {@code parallelism} by {@link GitCommand#reserveDrainThreads(int)}.
+ */
+public class GitScheduler implements AutoCloseable {
+  private final ExecutorService executor;
+  private final int parallelism;
+
+  public GitScheduler(int parallelism) {
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("parallelism should be positive: " + parallelism);
+    }
+    this.parallelism = parallelism;
+    GitCommand.reserveDrainThreads(parallelism);
+    executor =
+        new ThreadPoolExecutor(
+            parallelism,
+            parallelism,
+            0L,
+            TimeUnit.MILLISECONDS,
+            new LinkedBlockingQueue<>(),
+            new WorkerFactory());
+  }
+
+  public int getParallelism() {
+    return parallelism;
+  }
+
+  /**
+   * Queues a task. It runs as soon as a worker becomes free.
+   *
+   * @param task the work to do, e.g. starting a process and waiting for it
+   * @param <T> the type of the result
+   * @return a {@link CompletableFuture} completed with the result of {@code task}, or completed
+   *     exceptionally with the exception thrown by {@code task}
+   */
+  public <T> CompletableFuture<T> submit(Callable<T> task) {
+    return CompletableFuture.supplyAsync(
+        () -> {
+          try {
+            return task.call();
+          } catch (Exception e) {
+            throw new CompletionException(e);
+          }
+        },
+        executor);
+  }
+
+  /** Stops accepting new tasks. Already queued tasks are still processed. */
+  @Override
+  public void close() {
+    executor.shutdown();
+  }
+
+  private static class WorkerFactory implements ThreadFactory {
+    private final AtomicInteger counter = new AtomicInteger();
+
+    @Override
+    public Thread newThread(Runnable runnable) {
+      var thread = new Thread(runnable, "git-form-worker-" + counter.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+}
@@ -0,0 +1,197 @@
+package hu.zza.util.gitform;
+
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * An instance of this class converts the GitForm folder ({@code gitFormRoot}) between the per-file
+ * layout (one {@code <name>_<hash>.yaml} per project) and the consolidated {@link
+ * GitFormManifest}. {@link ProjectBuilder#load()} reads both, so a folder keeps working during and
+ * after the conversion.
+ */
+public class ManifestConverter {
+  private static final Predicate<Path> isYaml = p -> p.toString().endsWith(".yaml");
+  private final Settings settings;
+  private final ResultReport resultReport;
+  private final Path gitFormRoot;
+
+  public ManifestConverter(Settings settings) {
+    this(settings, new ResultReport());
+  }
+
+  public ManifestConverter(Settings settings, ResultReport resultReport) {
+    this.settings = settings;
+    this.resultReport = resultReport;
+    gitFormRoot = settings.getGitFormRoot();
+  }
+
+  /**
+   * Moves every project YAML (every document of it) of {@code gitFormRoot} into the manifest. The
+   * already packed projects are kept, but a YAML replaces the packed project of the same location
+   * if they differ (the YAML is newer). Two YAML files of the same location but with a different
+   * content are a conflict: the first one is packed, the other one is kept. A YAML file is deleted
+   * only if every project of it is in the manifest, and only after the manifest has been written.
+   */
+  public void pack() {
+    resultReport.clear();
+    resultReport.setMainObjective("Pack GitForm folder");
+    Path manifestFile = settings.getManifestFile();
+
+    try (Stream<Path> files = Files.list(gitFormRoot)) {
+      var projects = new LinkedHashMap<Path, GitHubProject>();
+      if (Files.exists(manifestFile)) {
+        GitFormManifest.read(manifestFile).forEach(p -> projects.put(p.getProjectRoot(), p));
+      }
+      var packedRoots = new HashSet<Path>();
+      var packedFiles = new ArrayList<Path>();
+
+      for (Path projectFile : files.filter(isYaml).sorted().collect(Collectors.toList())) {
+        if (packProjectFile(projectFile, projects, packedRoots)) {
+          packedFiles.add(projectFile);
+        }
+      }
+      GitFormManifest.write(manifestFile, projects.values());
+
+      for (Path packedFile : packedFiles) {
+        Files.delete(packedFile);
+      }
+      resultReport.setSuccessful(true);
+    } catch (IOException e) {
+      resultReport.appendAdditionalInfo("Cannot pack projects:", e.toString());
+    } finally {
+      resultReport.print();
+    }
+  }
+
+  /**
+   * @param projectFile a project YAML to pack
+   * @param projects the projects of the manifest by their location
+   * @param packedRoots the locations packed from the YAML files so far
+   * @return true if every project of the file is in the manifest (so the file can be deleted)
+   */
+  private boolean packProjectFile(
+      Path projectFile, Map<Path, GitHubProject> projects, Set<Path> packedRoots) {
+    List<GitHubProject> fileProjects;
+    try {
+      fileProjects = GitHubProject.parseAll(projectFile);
+    } catch (IOException | RuntimeException e) {
+      resultReport.appendAdditionalInfo("Cannot parse project file:", projectFile.toString());
+      return false;
+    }
+    if (fileProjects.isEmpty()) {
+      resultReport.appendAdditionalInfo("Cannot parse project file:", projectFile.toString());
+      return false;
+    }
+    boolean packed = true;
+
+    for (GitHubProject project : fileProjects) {
+      Path root = project.getProjectRoot();
+      GitHubProject packedProject = projects.get(root);
+
+      if (packedProject == null) {
+        resultReport.appendResult(root.toString());
+      } else if (isSame(packedProject, project)) {
+        resultReport.appendAdditionalInfo("Project already exists:", root.toString());
+      } else if (!packedRoots.contains(root)) {
+        resultReport.appendResult(root.toString());
+        resultReport.appendAdditionalInfo("Replaced in manifest:", root.toString());
+      } else {
+        resultReport.appendAdditionalInfo(
+            "Conflicting project file (kept):", String.format("%s (%s)", projectFile, root));
+        packed = false;
+        continue;
+      }
+      projects.put(root, project);
+      packedRoots.add(root);
+    }
+    return packed;
+  }
+
+  /**
+   * @param a a {@link GitHubProject}
+   * @param b another {@link GitHubProject}
+   * @return true if every field of them (not only the location) is the same
+   */
+  private static boolean isSame(GitHubProject a, GitHubProject b) {
+    return a.getExportList().equals(b.getExportList());
+  }
+
+  /**
+   * Writes every project of the manifest into {@code gitFormRoot} as a YAML file. The manifest is
+   * deleted only if every project has been written (or its YAML has already existed with the same
+   * content). A YAML of the same name but with a different content is a conflict: it's kept, and so
+   * is the manifest.
+   */
+  public void unpack() {
+    resultReport.clear();
+    resultReport.setMainObjective("Unpack GitForm manifest");
+    Path manifestFile = settings.getManifestFile();
+
+    try {
+      boolean unpacked = true;
+      for (GitHubProject project : GitFormManifest.read(manifestFile)) {
+        unpacked &= unpackProject(project);
+      }
+      if (unpacked) {
+        Files.delete(manifestFile);
+      }
+      resultReport.setSuccessful(unpacked);
+    } catch (IOException e) {
+      resultReport.appendAdditionalInfo("Cannot unpack projects:", e.toString());
+    } finally {
+      resultReport.print();
+    }
+  }
+
+  /**
+   * @param project a {@link GitHubProject} of the manifest
+   * @return false if the project YAML cannot be written, or it exists with a different content
+   */
+  private boolean unpackProject(GitHubProject project) {
+    Path projectFile = gitFormRoot.resolve(project.getFileName());
+    try {
+      Files.write(projectFile, project.getExportList(), StandardOpenOption.CREATE_NEW);
+      resultReport.appendResult(project.getProjectRoot().toString());
+    } catch (FileAlreadyExistsException ignored) {
+      if (!isUnpacked(projectFile, project)) {
+        resultReport.appendAdditionalInfo(
+            "Conflicting project file (kept):",
+            String.format("%s (%s)", projectFile, project.getProjectRoot()));
+        return false;
+      }
+      resultReport.appendAdditionalInfo(
+          "Project already exists:", project.getProjectRoot().toString());
+    } catch (IOException e) {
+      resultReport.appendAdditionalInfo(
+          "Cannot unpack project:", project.getProjectRoot().toString());
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * @param projectFile an existing project YAML
+   * @param project a {@link GitHubProject} of the manifest
+   * @return true if {@code projectFile} holds exactly {@code project}
+   */
+  private static boolean isUnpacked(Path projectFile, GitHubProject project) {
+    try {
+      List<GitHubProject> fileProjects = GitHubProject.parseAll(projectFile);
+      return fileProjects.size() == 1 && isSame(fileProjects.get(0), project);
+    } catch (IOException | RuntimeException e) {
+      return false;
+    }
+  }
+}
@@ -0,0 +1,264 @@
+package hu.zza.util.gitform;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * A local cache of bare mirror repositories (by default {@code ~/.git-form/mirrors}), one per
+ * normalized origin URL. {@link ProjectBuilder} clones with {@code --reference-if-able <mirror>
+ * --dissociate}, so the objects come from the local mirror, and only the missing ones are
+ * downloaded from the origin. Thanks to {@code --dissociate}, a clone never depends on its mirror.
+ *
+ * <p>A mirror is created by {@code git clone --mirror} on its first use, and refreshed by {@code
+ * git fetch --prune} (once per run) on the next ones. The cache has a size limit: {@link
+ * MirrorCache#evict()} deletes the least recently used mirrors until the cache fits into it, even
+ * the ones used in this run (a finished clone doesn't need its mirror).
+ */
+public class MirrorCache {
+  private static final String lastUsedFileName = "gitform-last-used";
+  private static final String mirrorSuffix = ".git";
+  private final Path cacheDirectory;
+  private final long maxBytes;
+  private final Map<String, Object> locks = new ConcurrentHashMap<>();
+  private final Set<Path> usedMirrors = ConcurrentHashMap.newKeySet();
+
+  /**
+   * @param cacheDirectory the {@link Path} of the cache folder (it's created on demand)
+   * @param maxBytes the size limit of the cache in bytes
+   */
+  public MirrorCache(Path cacheDirectory, long maxBytes) {
+    this.cacheDirectory = cacheDirectory;
+    this.maxBytes = maxBytes;
+  }
+
+  /**
+   * Normalizes an origin URL, so the different URLs of the same repository (SSH, scp-like, HTTPS,
+   * with or without {@code .git}) share a mirror. E.g. {@code git@github.com:user/repo.git} and
+   * {@code https://github.com/user/repo} are both {@code github.com/user/repo}.
+   *
+   * @param originUrl the URL of a remote
+   * @return the normalized URL
+   */
+  public static String normalizeUrl(String originUrl) {
+    String url = originUrl.strip();
+    int schemeEnd = url.indexOf("://");
+
+    if (schemeEnd >= 0) {
+      url = url.substring(schemeEnd + 3);
+    } else if (url.indexOf(':') > 0 && url.indexOf(':') < slashIndex(url)) {
+      url = url.replaceFirst(":", "/");
+    }
+    url = url.substring(url.indexOf('@') < slashIndex(url) ? url.indexOf('@') + 1 : 0);
+    url = url.replaceAll("/+$", "");
+    if (url.endsWith(mirrorSuffix)) {
+      url = url.substring(0, url.length() - mirrorSuffix.length());
+    }
+
+    int hostEnd = slashIndex(url);
+    String host = url.substring(0, hostEnd).toLowerCase(Locale.ROOT);
+    return host.replaceFirst(":(22|443)$", "") + url.substring(hostEnd);
+  }
+
+  private static int slashIndex(String url) {
+    int slash = url.indexOf('/');
+    return slash < 0 ? url.length() : slash;
+  }
+
+  /**
+   * @param originUrl the URL of a remote
+   * @return the {@link Path} of its mirror (it may not exist)
+   */
+  public Path getMirror(String originUrl) {
+    String key = normalizeUrl(originUrl);
+    String readable = key.replaceAll("[^A-Za-z0-9._-]+", "_");
+    return cacheDirectory.resolve(
+        String.format("%s-%08x%s", readable, key.hashCode(), mirrorSuffix));
+  }
+
+  /**
+   * Returns the up-to-date mirror of {@code originUrl}: it creates the mirror if it's missing, or
+   * fetches it if it hasn't been refreshed in this run yet. The same mirror is never updated by two
+   * threads at the same time.
+   *
+   * @param originUrl the URL of a remote
+   * @return the {@link Path} of the mirror
+   * @throws IOException if the mirror cannot be created or refreshed
+   * @throws InterruptedException if the thread is interrupted while waiting for Git
+   */
+  public Path prepare(String originUrl) throws IOException, InterruptedException {
+    Path mirror = getMirror(originUrl);
+
+    synchronized (locks.computeIfAbsent(mirror.getFileName().toString(), k -> new Object())) {
+      if (!usedMirrors.contains(mirror)) {
+        if (Files.isDirectory(mirror)) {
+          requireSuccess(GitCommand.run(mirror, "fetch", "--prune", "--quiet"), "fetch");
+        } else {
+          createMirror(originUrl, mirror);
+        }
+        usedMirrors.add(mirror);
+      }
+      Files.writeString(mirror.resolve(lastUsedFileName), Instant.now().toString());
+    }
+    return mirror;
+  }
+
+  /**
+   * Clones the mirror into a temporary folder first, and moves it to its place only when it's
+   * complete, so an interrupted clone never leaves a broken mirror.
+   *
+   * @param originUrl the URL of the remote to mirror
+   * @param mirror the {@link Path} of the mirror
+   * @throws IOException if the clone fails or the mirror cannot be moved to its place
+   * @throws InterruptedException if the thread is interrupted while waiting for Git
+   */
+  private void createMirror(String originUrl, Path mirror)
+      throws IOException, InterruptedException {
+    Files.createDirectories(cacheDirectory);
+    Path tmpDirectory = Files.createTempDirectory(cacheDirectory, "mirror-");
+
+    try {
+      requireSuccess(
+          GitCommand.run(
+              cacheDirectory,
+              "clone",
+              "--mirror",
+              "--quiet",
+              "--",
+              originUrl,
+              tmpDirectory.toString()),
+          "clone --mirror");
+      Files.move(tmpDirectory, mirror, StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      if (Files.exists(tmpDirectory)) {
+        delete(tmpDirectory);
+      }
+    }
+  }
+
+  private static void requireSuccess(GitCommand.Result result, String subcommand)
+      throws IOException {
+    if (!result.isSuccessful()) {
+      throw new GitCommandException(result, subcommand);
+    }
+  }
+
+  /**
+   * Deletes the least recently used mirrors until the size of the cache is within the limit. The
+   * mirrors used in this run are the most recently used ones, so they are deleted last, but they
+   * are deleted if the cache is still over the limit: a mirror larger than the limit is not kept
+   * either. It must not run while a clone is borrowing objects from a mirror (the finished clones
+   * are dissociated, they don't need it). An evicted mirror is created again by its next {@link
+   * MirrorCache#prepare(String)}.
+   *
+   * @return the deleted mirrors
+   * @throws IOException if the cache cannot be listed or a mirror cannot be deleted
+   */
+  public List<Path> evict() throws IOException {
+    var evicted = new ArrayList<Path>();
+    if (Files.notExists(cacheDirectory)) {
+      return evicted;
+    }
+    var mirrors = new ArrayList<Path>();
+    try (DirectoryStream<Path> entries = Files.newDirectoryStream(cacheDirectory, "*.git")) {
+      entries.forEach(mirrors::add);
+    }
+    var sizes = new HashMap<Path, Long>();
+    long totalBytes = 0;
+    for (Path mirror : mirrors) {
+      sizes.put(mirror, size(mirror));
+      totalBytes += sizes.get(mirror);
+    }
+    mirrors.sort(Comparator.comparing(MirrorCache::getLastUsed));
+
+    for (Path mirror : mirrors) {
+      if (totalBytes <= maxBytes) {
+        break;
+      }
+      delete(mirror);
+      usedMirrors.remove(mirror);
+      totalBytes -= sizes.get(mirror);
+      evicted.add(mirror);
+    }
+    return evicted;
+  }
+
+  /**
+   * @param mirror the {@link Path} of a mirror
+   * @return the time of its last use (or its modification time if it's unknown)
+   */
+  private static FileTime getLastUsed(Path mirror) {
+    try {
+      Path lastUsedFile = mirror.resolve(lastUsedFileName);
+      return Files.getLastModifiedTime(Files.exists(lastUsedFile) ? lastUsedFile : mirror);
+    } catch (IOException e) {
+      return FileTime.fromMillis(0);
+    }
+  }
+
+  /**
+   * @param directory the {@link Path} of a folder
+   * @return the total size of the files in the folder (recursively) in bytes
+   * @throws IOException if the folder cannot be walked
+   */
+  private static long size(Path directory) throws IOException {
+    try (Stream<Path> files = Files.walk(directory)) {
+      return files
+          .filter(Files::isRegularFile)
+          .mapToLong(
+              file -> {
+                try {
+                  return Files.size(file);
+                } catch (IOException e) {
+                  throw new UncheckedIOException(e);
+                }
+              })
+          .sum();
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+  }
+
+  /**
+   * @param directory the {@link Path} of a folder to delete with its content
+   * @throws IOException if something cannot be deleted
+   */
+  private static void delete(Path directory) throws IOException {
+    Files.walkFileTree(
+        directory,
+        new SimpleFileVisitor<>() {
+          @Override
+          public FileVisitResult visitFile(Path file, BasicFileAttributes attributes)
+              throws IOException {
+            Files.delete(file);
+            return FileVisitResult.CONTINUE;
+          }
+
+          @Override
+          public FileVisitResult postVisitDirectory(Path dir, IOException e) throws IOException {
+            if (e != null) {
+              throw e;
+            }
+            Files.delete(dir);
+            return FileVisitResult.CONTINUE;
+          }
+        });
+  }
+}
@@ -0,0 +1,74 @@
+package hu.zza.util.gitform;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A {@link GitBackend} which delegates each operation to the backend selected for it in {@code
+ * settings.yaml}, e.g. {@code process, status=jgit}. It's made by {@link GitBackend#create(String,
+ * GitConfigCache)}.
+ */
+final class PerOperationGitBackend implements GitBackend {
+  private final Map<Operation, GitBackend> backends;
+
+  /** @param backends the backend of every {@link Operation} */
+  PerOperationGitBackend(Map<Operation, GitBackend> backends) {
+    this.backends = backends;
+  }
+
+  @Override
+  public String getName() {
+    var name = new StringBuilder();
+    backends.forEach(
+        (operation, backend) ->
+            name.append(name.length() == 0 ? "" : ", ")
+                .append(operation.name().toLowerCase(Locale.ROOT))
+                .append('=')
+                .append(backend.getName()));
+    return name.toString();
+  }
+
+  @Override
+  public Integer clone(String originUrl, Path rootPath, CloneProfile profile, Path mirror)
+      throws IOException, InterruptedException {
+    return backends.get(Operation.CLONE).clone(originUrl, rootPath, profile, mirror);
+  }
+
+  @Override
+  public void fetch(Path rootPath) throws IOException, InterruptedException {
+    backends.get(Operation.FETCH).fetch(rootPath);
+  }
+
+  @Override
+  public RepositoryStatus status(Path rootPath) throws IOException, InterruptedException {
+    return backends.get(Operation.STATUS).status(rootPath);
+  }
+
+  @Override
+  public String getRemoteUrl(Path projectRoot, String remoteName) throws IOException {
+    return backends.get(Operation.REMOTE).getRemoteUrl(projectRoot, remoteName);
+  }
+
+  /** The operations of a {@link GitBackend} which can be selected one by one. */
+  enum Operation {
+    CLONE,
+    FETCH,
+    STATUS,
+    REMOTE;
+
+    /**
+     * @param name the name of the operation in {@code settings.yaml}, e.g. {@code status}
+     * @return the {@link Operation}
+     * @throws IllegalArgumentException if there is no such operation
+     */
+    static Operation parse(String name) {
+      try {
+        return valueOf(name.toUpperCase(Locale.ROOT));
+      } catch (IllegalArgumentException e) {
+        throw new IllegalArgumentException("Unknown git backend operation: " + name);
+      }
+    }
+  }
+}
@@ -0,0 +1,80 @@
+package hu.zza.util.gitform;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The default {@link GitBackend}: clone, fetch and status run {@code git} processes by {@link
+ * GitCommand}. A remote URL is looked up without a process: the config files are parsed by {@link
+ * GitConfig} and cached by {@link GitConfigCache}.
+ */
+public class ProcessGitBackend implements GitBackend {
+  public static final String backendName = "process";
+  private final GitConfigCache configCache;
+
+  public ProcessGitBackend() {
+    this(new GitConfigCache());
+  }
+
+  /** @param configCache the cache of the parsed config files (it can be shared) */
+  public ProcessGitBackend(GitConfigCache configCache) {
+    this.configCache = configCache;
+  }
+
+  @Override
+  public String getName() {
+    return backendName;
+  }
+
+  /**
+   * Runs {@code git clone}. If {@code mirror} is given, the objects are borrowed from it with
+   * {@code --reference-if-able <mirror> --dissociate}. The output is discarded, except the last
+   * lines of the standard error, which are in the message of the exception on failure.
+   */
+  @Override
+  public Integer clone(String originUrl, Path rootPath, CloneProfile profile, Path mirror)
+      throws IOException, InterruptedException {
+    var arguments = new ArrayList<>(List.of("clone", "--quiet"));
+
+    if (mirror != null) {
+      arguments.addAll(List.of("--reference-if-able", mirror.toString(), "--dissociate"));
+    }
+    arguments.addAll(profile.getArguments());
+    arguments.addAll(List.of("--", originUrl, rootPath.toString()));
+    GitCommand.Result result = GitCommand.start(rootPath.getParent(), false, arguments).waitFor();
+    requireSuccess(result, "clone");
+    return result.getExitValue();
+  }
+
+  @Override
+  public void fetch(Path rootPath) throws IOException, InterruptedException {
+    requireSuccess(GitCommand.run(rootPath, "fetch", "--quiet"), "fetch");
+  }
+
+  /** Parses the output of {@code git status --porcelain=v2 --branch}. */
+  @Override
+  public RepositoryStatus status(Path rootPath) throws IOException, InterruptedException {
+    GitCommand.Result result = GitCommand.run(rootPath, "status", "--porcelain=v2", "--branch");
+    requireSuccess(result, "status");
+    return RepositoryStatus.parse(result.getOutput());
+  }
+
+  @Override
+  public String getRemoteUrl(Path projectRoot, String remoteName) throws IOException {
+    return configCache.get(GitConfig.findConfigFile(projectRoot)).getRemoteUrl(remoteName);
+  }
+
+  /**
+   * @param result the {@link GitCommand.Result} to check
+   * @param subcommand the name of the Git subcommand for the error message
+   * @throws GitCommandException if the command has failed
+   */
+  private static void requireSuccess(GitCommand.Result result, String subcommand)
+      throws GitCommandException {
+    if (!result.isSuccessful()) {
+      throw new GitCommandException(result, subcommand);
+    }
+  }
+}
@@ -1,157 +1,872 @@
 package hu.zza.util.gitform;
 
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
-import java.util.Map.Entry;
-import java.util.Objects;
+import java.util.Queue;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Future;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Predicate;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 /**
- * An instance of this class is used to synchronize* GitHub projects according to parsable GitForm
+ * An instance of this class is used to synchronize GitHub projects according to parsable GitForm
  * YAML files representing {@link GitHubProject projects}. These files can be made by {@link
  * ProjectMapper#save()}.
  *
- * <p>* Synchronization means in this case the building of the folder structure (relative to {@code
- * gitRoot}) and the cloning of the GitHub repository. The real sync is on the backlog.
+ * <p>{@link ProjectBuilder#load()} builds the folder structure (relative to {@code gitRoot}) and
+ * clones the missing GitHub repositories. {@link ProjectBuilder#sync()} does the same, and it also
+ * fetches the existing ones and fast-forwards them when it's safe. {@link
+ * ProjectBuilder#loadAndWatch()} keeps loading the new project files as they arrive.
  */
 public class ProjectBuilder {
-  private static final Runtime runtime = Runtime.getRuntime();
   private static final Predicate<Path> isYaml = p -> p.toString().endsWith(".yaml");
+  private static final long settleMillis = 500;
+  private static final long pollMillis = 100;
+  private static final String sourceRefspec = "+refs/remotes/origin/*:refs/remotes/origin/*";
   private final Settings settings;
   private final ResultReport resultReport;
   private final Path gitRoot;
   private final Path gitFormRoot;
-  private final Map<GitHubProject, CompletableFuture<Process>> results = new HashMap<>();
+  private final EventLog events;
+  private final Queue<CompletableFuture<Void>> results = new ConcurrentLinkedQueue<>();
+  private final Set<GitHubProject> scheduled = ConcurrentHashMap.newKeySet();
+  private final Map<String, CompletableFuture<Path>> checkouts = new ConcurrentHashMap<>();
+  private RunMetrics metrics = new RunMetrics("load");
+  private boolean syncExisting;
+  private MirrorCache mirrorCache;
+  private GitBackend backend;
+  private volatile boolean watching;
 
   public ProjectBuilder(Settings settings) {
     this(settings, new ResultReport());
   }
 
   public ProjectBuilder(Settings settings, ResultReport resultReport) {
+    this(settings, resultReport, EventLog.disabled);
+  }
+
+  public ProjectBuilder(Settings settings, ResultReport resultReport, EventLog events) {
     this.settings = settings;
     this.resultReport = resultReport;
+    this.events = events;
     gitRoot = settings.getGitRoot();
     gitFormRoot = settings.getGitFormRoot();
   }
 
+  /** @return the {@link RunMetrics} of the last (or current) load or sync */
+  public RunMetrics getMetrics() {
+    return metrics;
+  }
+
   /**
-   * Pulls every found, non-existent project and builds the proper folder structure for them. First,
-   * it tries to parse every YAML file in {@code gitFormRoot} to {@link GitHubProject}. Then it
-   * filters out the parsing errors (nulls) and the rest are processed by {@link
-   * ProjectBuilder#cloneIfAbsent(GitHubProject)}.
+   * Pulls every found, non-existent project and builds the proper folder structure for them. It
+   * parses the {@link GitFormManifest} (if any) and every YAML file in {@code gitFormRoot} in
+   * parallel (a YAML file may contain more projects as separate documents). As soon as a file is
+   * parsed, its valid, not yet seen projects are processed by {@link
+   * ProjectBuilder#cloneIfAbsent(GitHubProject, GitScheduler)}, so the first clones start while
+   * the rest of the files are still being parsed. The clones run on a {@link GitScheduler} with
+   * at most {@link Settings#getParallelism()} processes at the same time.
+   *
+   * <p>Every unreadable file and every malformed project entry is put into the {@link
+   * ResultReport}. Finally, the {@link RunMetrics} of the run are written to {@link
+   * Settings#getMetricsPath()}. Meanwhile, the progress is streamed to the {@link EventLog} (if
+   * it's enabled).
    */
   public void load() {
-    results.clear();
-    resultReport.setMainObjective("Load GitHub projects");
+    build("load", "Load GitHub projects", false);
+  }
 
-    try (Stream<Path> files = Files.list(gitFormRoot)) {
+  /**
+   * Like {@link ProjectBuilder#load()}, but the existing projects are synchronized too by {@link
+   * ProjectBuilder#syncProject(Path)}: they are fetched in parallel (on the same {@link
+   * GitScheduler} as the clones), and fast-forwarded if it's safe. The outcome of every project is
+   * put into the {@link ResultReport}: the updated ones are main results, the rest are listed by
+   * {@link SyncOutcome}.
+   */
+  public void sync() {
+    build("sync", "Sync GitHub projects", true);
+  }
+
+  /**
+   * @param command the name of the command for {@link RunMetrics}
+   * @param objective the main objective of the {@link ResultReport}
+   * @param syncExisting if true, the existing projects are synchronized, otherwise skipped
+   */
+  private void build(String command, String objective, boolean syncExisting) {
+    reset(command, objective, syncExisting);
+    long start = System.nanoTime();
+    events.emit("run_started", "command", command);
+
+    try (Stream<Path> files = Files.list(gitFormRoot);
+        var parser = new GitScheduler(settings.getParallelism());
+        var scheduler = new GitScheduler(settings.getParallelism())) {
+      backend = GitBackend.create(settings.getGitBackend(), new GitConfigCache());
+      var parsing = new ArrayList<CompletableFuture<Void>>();
+      Path manifestFile = settings.getManifestFile();
+
+      if (Files.exists(manifestFile)) {
+        parsing.add(ingest(manifestFile, GitFormManifest::readDocuments, parser, scheduler));
+      }
       files
           .filter(isYaml)
-          .map(this::parseProjectFile)
-          .filter(Objects::nonNull)
-          .forEach(this::cloneIfAbsent);
-      prepareResultReport();
-    } catch (IOException e) {
+          .map(file -> ingest(file, YamlReader::parseAll, parser, scheduler))
+          .forEach(parsing::add);
+
+      CompletableFuture.allOf(parsing.toArray(CompletableFuture[]::new)).join();
+      awaitResults();
+      evictMirrors();
+    } catch (IOException | IllegalArgumentException e) {
       resultReport.appendAdditionalInfo("Cannot load projects:", e.toString());
+      events.emit("error", "message", e.toString());
     } finally {
+      writeMetrics();
+      events.emit(
+          "run_finished",
+          "command",
+          command,
+          "successful",
+          resultReport.isSuccessful(),
+          "ms",
+          TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
       resultReport.print();
     }
   }
 
   /**
-   * @param projectFile {@link Path} of a YAML file with a dictionary of at least these keys: name,
-   *     local, origin
-   * @return {@link GitHubProject}, or {@code null} if {@link IOException} occurs during file
-   *     handling
+   * Prepares a new run: the state of the previous one is dropped.
+   *
+   * @param command the name of the command for {@link RunMetrics}
+   * @param objective the main objective of the {@link ResultReport}
+   * @param syncExisting if true, the existing projects are synchronized, otherwise skipped
+   */
+  private void reset(String command, String objective, boolean syncExisting) {
+    results.clear();
+    scheduled.clear();
+    checkouts.clear();
+    resultReport.setMainObjective(objective);
+    metrics = new RunMetrics(command);
+    this.syncExisting = syncExisting;
+    long mirrorCacheBytes = (long) settings.getMirrorCacheSize() << 20;
+    mirrorCache =
+        mirrorCacheBytes > 0
+            ? new MirrorCache(settings.getMirrorCachePath(), mirrorCacheBytes)
+            : null;
+  }
+
+  /**
+   * Loads the projects like {@link ProjectBuilder#load()}, then watches {@code gitFormRoot} until
+   * the thread is interrupted (e.g. while a shared GitForm folder is being synchronized). A new or
+   * changed project file (a YAML file or the manifest) is parsed as soon as it has settled: its
+   * size and modification time haven't changed for {@value #settleMillis} ms. If it still changes
+   * while it's being read, the result is dropped (even a failure), and the file is read again when
+   * it settles. Hidden files (e.g. the temporary files of a sync tool) are ignored.
+   *
+   * <p>The new projects go into the same pipeline as the ones of a load, without waiting for the
+   * running clones. The existing projects are never cloned again, and a failed clone is retried
+   * only if a project file of it changes. The {@link ResultReport} is printed whenever the
+   * pipeline becomes idle. While nothing happens, the thread is blocked in {@link
+   * WatchService#take()}. The {@link RunMetrics} are written only by the initial load.
+   *
+   * @throws IOException if {@code gitFormRoot} cannot be created or watched
+   * @throws InterruptedException if the thread is interrupted (the normal end of the watch)
+   */
+  public void loadAndWatch() throws IOException, InterruptedException {
+    Files.createDirectories(gitFormRoot);
+    var processed = new HashMap<Path, GitConfig.FileStamp>();
+
+    try (WatchService service = gitFormRoot.getFileSystem().newWatchService()) {
+      gitFormRoot.register(service, ENTRY_CREATE, ENTRY_MODIFY);
+      for (Path file : listProjectFiles()) {
+        processed.put(file, GitConfig.FileStamp.of(file));
+      }
+      load();
+      resultReport.clear();
+      reset("watch", "Load new GitHub projects", false);
+      watching = true;
+
+      try (var parser = new GitScheduler(settings.getParallelism());
+          var scheduler = new GitScheduler(settings.getParallelism())) {
+        backend = GitBackend.create(settings.getGitBackend(), new GitConfigCache());
+        var pending = new HashMap<Path, PendingFile>();
+        events.emit("watch_started", "root", gitFormRoot.toString());
+        System.out.printf("Watching %s, press Ctrl+C to stop.%n%n", gitFormRoot);
+
+        while (true) {
+          WatchKey key =
+              pending.isEmpty() && results.isEmpty()
+                  ? service.take()
+                  : service.poll(pollMillis, TimeUnit.MILLISECONDS);
+          if (key != null) {
+            collectProjectFiles(key, pending);
+          }
+          for (GitConfig.FileStamp stamp : takeSettled(pending)) {
+            if (!stamp.equals(processed.put(stamp.getPath(), stamp))) {
+              Path file = stamp.getPath();
+              results.add(ingest(file, readSettled(getReader(file)), parser, scheduler));
+            }
+          }
+          printIfIdle();
+        }
+      }
+    } finally {
+      watching = false;
+    }
+  }
+
+  /**
+   * @return the project files of {@code gitFormRoot}: the manifest (if any) and the YAML files
+   * @throws IOException if {@code gitFormRoot} cannot be listed
+   */
+  private List<Path> listProjectFiles() throws IOException {
+    try (Stream<Path> files = Files.list(gitFormRoot)) {
+      return files.filter(this::isProjectFile).collect(Collectors.toList());
+    }
+  }
+
+  /**
+   * @param file a file of {@code gitFormRoot}
+   * @return true if it's the manifest or a (non-hidden) YAML file
+   */
+  private boolean isProjectFile(Path file) {
+    return !file.getFileName().toString().startsWith(".")
+        && (isYaml.test(file) || file.equals(settings.getManifestFile()));
+  }
+
+  private DocumentReader getReader(Path file) {
+    return file.equals(settings.getManifestFile())
+        ? GitFormManifest::readDocuments
+        : YamlReader::parseAll;
+  }
+
+  /**
+   * Adds the project files of the events of {@code key} to {@code pending} (an overflow adds every
+   * project file), and resets it.
+   *
+   * @param key a signalled {@link WatchKey} of {@code gitFormRoot}
+   * @param pending the changed project files which haven't settled yet
+   * @throws IOException if {@code gitFormRoot} is not accessible anymore
+   */
+  private void collectProjectFiles(WatchKey key, Map<Path, PendingFile> pending)
+      throws IOException {
+    var files = new ArrayList<Path>();
+    for (WatchEvent<?> event : key.pollEvents()) {
+      if (event.kind() == OVERFLOW) {
+        files.addAll(listProjectFiles());
+      } else {
+        files.add(gitFormRoot.resolve((Path) event.context()));
+      }
+    }
+    long now = System.nanoTime();
+    files.stream()
+        .filter(this::isProjectFile)
+        .forEach(file -> pending.computeIfAbsent(file, PendingFile::new).since = now);
+
+    if (!key.reset()) {
+      throw new IOException(gitFormRoot + " is not accessible anymore.");
+    }
+  }
+
+  /**
+   * Takes the settled files from {@code pending}: a file has settled if its size and modification
+   * time haven't changed for {@value #settleMillis} ms. A deleted file is just dropped.
+   *
+   * @param pending the changed project files which haven't settled yet
+   * @return the current {@link GitConfig.FileStamp stamps} of the settled files
+   */
+  private static List<GitConfig.FileStamp> takeSettled(Map<Path, PendingFile> pending) {
+    var settled = new ArrayList<GitConfig.FileStamp>();
+    long now = System.nanoTime();
+
+    for (var iterator = pending.values().iterator(); iterator.hasNext(); ) {
+      PendingFile file = iterator.next();
+      GitConfig.FileStamp stamp;
+      try {
+        stamp = GitConfig.FileStamp.of(file.path);
+      } catch (IOException e) {
+        iterator.remove();
+        continue;
+      }
+      if (!stamp.equals(file.stamp)) {
+        file.stamp = stamp;
+        file.since = now;
+      } else if (now - file.since >= TimeUnit.MILLISECONDS.toNanos(settleMillis)) {
+        settled.add(stamp);
+        iterator.remove();
+      }
+    }
+    return settled;
+  }
+
+  /**
+   * @param reader reads the documents of a project file
+   * @return a {@link DocumentReader} which drops the result of {@code reader} (even a failure) if
+   *     the file has changed meanwhile, i.e. it's still being written
    */
-  private GitHubProject parseProjectFile(Path projectFile) {
+  private DocumentReader readSettled(DocumentReader reader) {
+    return file -> {
+      var stamp = GitConfig.FileStamp.of(file);
+      try {
+        List<Map<String, String>> documents = reader.read(file);
+        if (stamp.isCurrent()) {
+          return documents;
+        }
+      } catch (IOException | RuntimeException e) {
+        if (stamp.isCurrent()) {
+          throw e;
+        }
+      }
+      metrics.increment("files_dropped");
+      events.emit("skipped", "file", file.toString(), "reason", "changed");
+      return List.of();
+    };
+  }
+
+  /**
+   * Prints (and clears) the {@link ResultReport} if every parse and clone has finished. The clones
+   * of the batch are not used as local clone sources anymore: they may be in use by now. As no
+   * clone is running, the {@link MirrorCache} is trimmed to its size limit too.
+   */
+  private void printIfIdle() {
+    if (!results.isEmpty() && results.stream().allMatch(CompletableFuture::isDone)) {
+      results.clear();
+      checkouts.clear();
+      evictMirrors();
+      resultReport.setSuccessful(true);
+      resultReport.print();
+      resultReport.clear();
+      resultReport.setMainObjective("Load new GitHub projects");
+    }
+  }
+
+  private void writeMetrics() {
+    metrics.finish();
     try {
-      return GitHubProject.parse(projectFile);
-    } catch (IOException ignored) {
-      return null;
+      metrics.write(settings.getMetricsPath());
+    } catch (IOException e) {
+      resultReport.appendAdditionalInfo("Cannot write metrics:", e.toString());
+    }
+  }
+
+  /**
+   * Parses a project file on {@code parser}, then schedules its projects for cloning.
+   *
+   * @param projectFile {@link Path} of a YAML file (or the manifest)
+   * @param reader reads the documents of {@code projectFile}
+   * @param parser the {@link GitScheduler} for parsing
+   * @param scheduler the {@link GitScheduler} for cloning
+   * @return a {@link CompletableFuture} completed when every project of the file is scheduled
+   */
+  private CompletableFuture<Void> ingest(
+      Path projectFile,
+      DocumentReader reader,
+      GitScheduler parser,
+      GitScheduler scheduler) {
+    return parser
+        .submit(
+            () -> {
+              var timer = metrics.time("parse");
+              try {
+                return reader.read(projectFile);
+              } finally {
+                timer.stop();
+              }
+            })
+        .handle(
+            (documents, exception) -> {
+              if (exception == null) {
+                metrics.increment("files_parsed");
+                events.emit(
+                    "file_parsed", "file", projectFile.toString(), "documents", documents.size());
+                scheduleProjects(projectFile, documents, scheduler);
+              } else {
+                Throwable cause = exception.getCause() == null ? exception : exception.getCause();
+                resultReport.appendAdditionalInfo(
+                    "Cannot parse project file:",
+                    String.format("%s (%s)", projectFile, cause.getMessage()));
+                events.emit(
+                    "error", "file", projectFile.toString(), "message", cause.getMessage());
+              }
+              return null;
+            });
+  }
+
+  /**
+   * Validates the parsed documents of a project file, and processes the valid, not yet seen
+   * projects by {@link ProjectBuilder#cloneIfAbsent(GitHubProject, GitScheduler)}.
+   *
+   * @param projectFile {@link Path} of the parsed file
+   * @param documents the key-value pairs of the projects
+   * @param scheduler the {@link GitScheduler} for cloning
+   */
+  private void scheduleProjects(
+      Path projectFile, List<Map<String, String>> documents, GitScheduler scheduler) {
+    for (int i = 0; i < documents.size(); i++) {
+      var document = documents.get(i);
+      List<String> missingKeys = GitHubProject.getMissingKeys(document);
+
+      if (!missingKeys.isEmpty()) {
+        String missing = "missing: " + String.join(", ", missingKeys);
+        resultReport.appendAdditionalInfo(
+            "Invalid project entry:", String.format("%s #%d (%s)", projectFile, i + 1, missing));
+        events.emit(
+            "error", "file", projectFile.toString(), "document", i + 1, "message", missing);
+        continue;
+      }
+      try {
+        GitHubProject project = GitHubProject.parse(document);
+        if (scheduled.add(project)) {
+          metrics.increment("projects_scheduled");
+          events.emit(
+              "project_parsed",
+              "project",
+              project.getProjectRoot().toString(),
+              "origin",
+              project.getOriginUrl());
+          cloneIfAbsent(project, scheduler);
+        }
+      } catch (RuntimeException e) {
+        resultReport.appendAdditionalInfo(
+            "Invalid project entry:", String.format("%s #%d (%s)", projectFile, i + 1, e));
+        events.emit(
+            "error", "file", projectFile.toString(), "document", i + 1, "message", e.toString());
+      }
     }
   }
 
   /**
    * If the given GitHub project ({@link GitHubProject#getOriginUrl()}) doesn't exist at the
-   * specific location ({@link GitHubProject#getProjectRoot()}) it tries to clone. The project
+   * specific location ({@link GitHubProject#getProjectRoot()}) it schedules a clone. The project
    * location is always relative to the {@code gitRoot}. If the parent directories don't exist, it
-   * creates them first.
+   * creates them first. An existing project is skipped, or scheduled for {@link
+   * ProjectBuilder#syncProject(Path)} in sync mode.
+   *
+   * <p>The projects with a {@link CloneProfile#full full} profile are grouped by their
+   * (normalized) origin URL: only the first checkout of an origin is cloned from the network, the
+   * others are cloned from it by {@link ProjectBuilder#cloneLocally(GitHubProject, Path, Path)}
+   * when it's ready. Only the clones of the current run are used as a source (in watch mode, the
+   * clones of the current batch), never the existing checkouts: they may have local branches and
+   * commits, which must not leak into the new clone. A shallow or partial clone is not a usable
+   * source, so the other profiles are always cloned from the network.
    *
    * @param project the instance of {@link GitHubProject} representing a GitHub project to clone
+   * @param scheduler the {@link GitScheduler} which runs the clone
    */
-  private void cloneIfAbsent(GitHubProject project) {
+  private void cloneIfAbsent(GitHubProject project, GitScheduler scheduler) {
     try {
       Path rootPath = gitRoot.resolve(project.getProjectRoot());
       if (Files.notExists(rootPath)) {
 
-        Files.createDirectories(rootPath.getParent());
+        var timer = metrics.time("mkdir");
+        try {
+          Files.createDirectories(rootPath.getParent());
+        } finally {
+          timer.stop();
+        }
+        var checkout = new CompletableFuture<Path>();
+        CompletableFuture<Path> firstCheckout =
+            getCloneProfile(project).isFull()
+                ? checkouts.putIfAbsent(MirrorCache.normalizeUrl(project.getOriginUrl()), checkout)
+                : null;
+        CompletableFuture<Path> clone;
 
-        results.put(
-            project,
-            runtime
-                .exec(String.format("git clone %s %s", project.getOriginUrl(), rootPath))
-                .onExit());
+        if (firstCheckout == null) {
+          clone = scheduler.submit(() -> cloneProject(project, rootPath));
+          clone.whenComplete((clonedPath, e) -> checkout.complete(clonedPath));
+        } else {
+          clone =
+              firstCheckout.thenCompose(
+                  source ->
+                      scheduler.submit(
+                          () ->
+                              source == null
+                                  ? cloneProject(project, rootPath)
+                                  : cloneLocally(project, source, rootPath)));
+        }
+        results.add(clone.handle((clonedPath, e) -> appendToResultReport(project, e)));
+      } else if (syncExisting) {
+        results.add(
+            scheduler
+                .submit(() -> syncProject(rootPath))
+                .handle((outcome, e) -> appendSyncOutcome(project, outcome, e)));
       } else {
+        metrics.increment("projects_existing");
         resultReport.appendAdditionalInfo(
             "Project already exists:", project.getProjectRoot().toString());
+        events.emit("skipped", "project", project.getProjectRoot().toString(), "reason", "exists");
       }
     } catch (IOException e) {
       resultReport.appendAdditionalInfo(
           "Cannot clone project:",
           String.format("%s (%s)", project.getProjectRoot(), project.getOriginUrl()));
+      events.emit(
+          "error", "project", project.getProjectRoot().toString(), "message", e.toString());
     }
   }
 
-  /** Prepare the results of {@link ProjectBuilder#load()} according to {@code results} Map. */
-  private void prepareResultReport() {
-    List<GitHubProject> completed = new ArrayList<>();
+  /**
+   * Clones the project with its {@link CloneProfile} (or the default one of {@link Settings}) by
+   * the {@link GitBackend}. If the {@link MirrorCache} is enabled, the objects are borrowed from
+   * the refreshed mirror of the origin. It runs on a worker thread of {@link GitScheduler}, so
+   * waiting here costs no CPU and keeps the parallelism limit. The clone is measured as the {@code
+   * clone} phase and as a clone latency of {@link RunMetrics}.
+   *
+   * @param project the {@link GitHubProject} to clone
+   * @param rootPath the absolute {@link Path} of the clone
+   * @return {@code rootPath}
+   * @throws IOException if the clone fails
+   * @throws InterruptedException if the worker is interrupted while waiting
+   */
+  private Path cloneProject(GitHubProject project, Path rootPath)
+      throws IOException, InterruptedException {
+    long start = System.nanoTime();
+    boolean successful = false;
+    Integer exitValue = null;
+    metrics.processStarted();
+    emitCloneStarted(project, "network");
+    try {
+      Path mirror = prepareMirror(project);
+      var timer = metrics.time("clone");
+      try {
+        exitValue =
+            backend.clone(project.getOriginUrl(), rootPath, getCloneProfile(project), mirror);
+      } finally {
+        timer.stop();
+      }
+      successful = true;
+      return rootPath;
+    } catch (GitCommandException e) {
+      exitValue = e.getExitValue();
+      throw e;
+    } finally {
+      metrics.processFinished();
+      metrics.recordCloneLatency(System.nanoTime() - start);
+      emitCloneFinished(project, exitValue, successful, start);
+    }
+  }
 
-    while (!results.isEmpty()) {
-      for (var e : results.entrySet()) {
-        if (e.getValue().isDone()) {
-          completed.add(e.getKey());
-          appendToResultReport(e);
-        }
+  /**
+   * @param project a {@link GitHubProject}
+   * @return the {@link CloneProfile} of the project, or the default one of {@link Settings}
+   */
+  private CloneProfile getCloneProfile(GitHubProject project) {
+    return project.getCloneProfile() == null
+        ? settings.getCloneProfile()
+        : project.getCloneProfile();
+  }
+
+  /**
+   * Clones a project from a full clone of the same origin, made by the current run on the local
+   * file system. The objects are hard-linked (when both are on the same file system), so neither
+   * the network nor the disk is used twice. The only local branch of the source is the default
+   * branch of the origin (untouched since its clone), so the new clone checks out the same branch.
+   * Then the remote-tracking branches are copied from the source, and the remote URL is set back
+   * to the origin, so the result is the same as a full clone from the network.
+   *
+   * @param project the {@link GitHubProject} to clone
+   * @param source the absolute {@link Path} of the clone of the current run
+   * @param rootPath the absolute {@link Path} of the clone
+   * @return {@code rootPath}
+   * @throws IOException if a Git process cannot be started, or it fails
+   * @throws InterruptedException if the worker is interrupted while waiting
+   */
+  private Path cloneLocally(GitHubProject project, Path source, Path rootPath)
+      throws IOException, InterruptedException {
+    long start = System.nanoTime();
+    boolean successful = false;
+    Integer exitValue = null;
+    metrics.processStarted();
+    emitCloneStarted(project, "local");
+
+    var timer = metrics.time("local-clone");
+    try {
+      requireSuccess(
+          GitCommand.run(
+              rootPath.getParent(),
+              "clone",
+              "--quiet",
+              "--local",
+              source.toString(),
+              rootPath.toString()),
+          "clone --local");
+      requireSuccess(
+          GitCommand.run(rootPath, "fetch", "--quiet", source.toString(), sourceRefspec),
+          "fetch");
+      requireSuccess(
+          GitCommand.run(rootPath, "remote", "set-url", "origin", project.getOriginUrl()),
+          "remote set-url");
+      metrics.increment("clones_local");
+      successful = true;
+      exitValue = 0;
+      return rootPath;
+    } catch (GitCommandException e) {
+      exitValue = e.getExitValue();
+      throw e;
+    } finally {
+      timer.stop();
+      metrics.processFinished();
+      emitCloneFinished(project, exitValue, successful, start);
+    }
+  }
+
+  private void emitCloneStarted(GitHubProject project, String source) {
+    events.emit(
+        "clone_started",
+        "project",
+        project.getProjectRoot().toString(),
+        "origin",
+        project.getOriginUrl(),
+        "source",
+        source);
+  }
+
+  /**
+   * @param project the cloned {@link GitHubProject}
+   * @param exitValue the exit value of the (last) {@code git} process, or null if there is none
+   *     (e.g. the clone of the JGit backend, or a failure before the start of the process)
+   * @param successful true if the clone has succeeded
+   * @param start the start of the clone by {@link System#nanoTime()}
+   */
+  private void emitCloneFinished(
+      GitHubProject project, Integer exitValue, boolean successful, long start) {
+    events.emit(
+        "clone_finished",
+        "project",
+        project.getProjectRoot().toString(),
+        "exit",
+        exitValue,
+        "successful",
+        successful,
+        "ms",
+        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+  }
+
+  /**
+   * Creates or refreshes the mirror of the project in the {@link MirrorCache} (if it's enabled). A
+   * failure is not fatal: it's reported, and the project is cloned without the mirror. A project
+   * with a shallow or partial {@link CloneProfile} doesn't use the mirror: a mirror has the whole
+   * history, which is exactly what the profile avoids downloading.
+   *
+   * @param project the {@link GitHubProject} to clone
+   * @return the {@link Path} of the mirror, or null if there is none
+   * @throws InterruptedException if the worker is interrupted while waiting for Git
+   */
+  private Path prepareMirror(GitHubProject project) throws InterruptedException {
+    if (mirrorCache == null || !getCloneProfile(project).isFull()) {
+      return null;
+    }
+    var timer = metrics.time("mirror");
+    try {
+      return mirrorCache.prepare(project.getOriginUrl());
+    } catch (IOException e) {
+      metrics.increment("mirrors_failed");
+      String info = String.format("%s (%s)", project.getOriginUrl(), e.getMessage());
+      resultReport.appendAdditionalInfo("Cannot update mirror:", info);
+      return null;
+    } finally {
+      timer.stop();
+    }
+  }
+
+  /** Deletes the least recently used mirrors if the {@link MirrorCache} is over its size limit. */
+  private void evictMirrors() {
+    if (mirrorCache == null) {
+      return;
+    }
+    try {
+      for (Path mirror : mirrorCache.evict()) {
+        metrics.increment("mirrors_evicted");
+        resultReport.appendAdditionalInfo("Evicted mirror:", mirror.getFileName().toString());
+      }
+    } catch (IOException e) {
+      resultReport.appendAdditionalInfo("Cannot evict mirrors:", e.toString());
+    }
+  }
+
+  /**
+   * Fetches an existing project (from the remote of its current branch's upstream), and
+   * fast-forwards the branch if it's only behind its upstream and there are no uncommitted changes
+   * in the tracked files. Otherwise, the project is left untouched. The fetch and the status check
+   * are done by the {@link GitBackend}, the fast-forward by {@code git merge}. It runs on a worker
+   * thread of {@link GitScheduler} like {@link ProjectBuilder#cloneProject(GitHubProject, Path)}.
+   *
+   * @param rootPath the absolute {@link Path} of the project
+   * @return the {@link SyncOutcome} of the project
+   * @throws IOException if the fetch, the status check or the merge fails
+   * @throws InterruptedException if the worker is interrupted while waiting
+   */
+  private SyncOutcome syncProject(Path rootPath) throws IOException, InterruptedException {
+    metrics.processStarted();
+    try {
+      var timer = metrics.time("fetch");
+      try {
+        backend.fetch(rootPath);
+      } finally {
+        timer.stop();
+      }
+      RepositoryStatus status;
+      timer = metrics.time("status");
+      try {
+        status = backend.status(rootPath);
+      } finally {
+        timer.stop();
+      }
+      if (status.getUpstream().isEmpty()) {
+        return SyncOutcome.NO_UPSTREAM;
+      }
+      if (status.getBehind() == 0) {
+        return SyncOutcome.UP_TO_DATE;
+      }
+      if (status.getAhead() > 0) {
+        return SyncOutcome.DIVERGED;
+      }
+      if (status.getStaged() + status.getUnstaged() + status.getConflicted() > 0) {
+        return SyncOutcome.DIRTY;
       }
-      completed.forEach(results::remove);
-      completed.clear();
+      timer = metrics.time("merge");
+      try {
+        requireSuccess(
+            GitCommand.run(rootPath, "merge", "--ff-only", "--quiet", "@{upstream}"), "merge");
+      } finally {
+        timer.stop();
+      }
+      return SyncOutcome.UPDATED;
+    } finally {
+      metrics.processFinished();
+    }
+  }
+
+  /**
+   * @param result the {@link GitCommand.Result} to check
+   * @param subcommand the name of the Git subcommand for the error message
+   * @throws GitCommandException if the command has failed
+   */
+  private static void requireSuccess(GitCommand.Result result, String subcommand)
+      throws GitCommandException {
+    if (!result.isSuccessful()) {
+      throw new GitCommandException(result, subcommand);
     }
+  }
+
+  /** Blocks until every scheduled clone of {@link ProjectBuilder#load()} has been reported. */
+  private void awaitResults() {
+    CompletableFuture.allOf(results.toArray(CompletableFuture[]::new)).join();
     resultReport.setSuccessful(true);
   }
 
-  private void appendToResultReport(Entry<GitHubProject, CompletableFuture<Process>> entry) {
-    String pathString = entry.getKey().getProjectRoot().toString();
+  /**
+   * Completion callback of a scheduled clone.
+   *
+   * @param project the cloned {@link GitHubProject}
+   * @param exception the cause of the failure, or null on normal completion
+   * @return always null, it's just for {@link CompletableFuture#handle}
+   */
+  private Void appendToResultReport(GitHubProject project, Throwable exception) {
+    String pathString = project.getProjectRoot().toString();
 
-    if (isDoneSuccessfully(entry.getValue())) {
+    if (exception == null) {
+      metrics.increment("clones_succeeded");
       resultReport.appendResult(pathString);
     } else {
-      resultReport.appendAdditionalInfo("Cannot load project:", pathString);
+      metrics.increment("clones_failed");
+      if (watching) {
+        scheduled.remove(project);
+      }
+      String message = getMessage(exception);
+      resultReport.appendAdditionalInfo(
+          "Cannot load project:", String.format("%s (%s)", pathString, message));
+      events.emit("error", "project", pathString, "message", message);
     }
+    return null;
   }
 
   /**
-   * Retrieve the processing success of a {@link Future<Process>} safely. It returns false in case
-   * of exception, but as far as it used on completed {@link Future<Process>} instances, it is
-   * accurate.
+   * Completion callback of a scheduled sync.
    *
-   * @param future a {@code Future<Process>} instance
-   * @return {@code future.get().exitValue() == 0} or {@code false} if an exception occurs
+   * @param project the synchronized {@link GitHubProject}
+   * @param outcome the {@link SyncOutcome}, or null if it has failed with exception
+   * @param exception the cause of the failure, or null on normal completion
+   * @return always null, it's just for {@link CompletableFuture#handle}
    */
-  private boolean isDoneSuccessfully(Future<Process> future) {
-    try {
-      return future.get().exitValue() == 0;
-    } catch (ExecutionException | InterruptedException ignored) {
-      return false;
+  private Void appendSyncOutcome(GitHubProject project, SyncOutcome outcome, Throwable exception) {
+    String pathString = project.getProjectRoot().toString();
+
+    if (exception != null) {
+      metrics.increment("syncs_failed");
+      resultReport.appendAdditionalInfo(
+          "Cannot sync project:", String.format("%s (%s)", pathString, getMessage(exception)));
+      events.emit("error", "project", pathString, "message", getMessage(exception));
+      return null;
+    }
+    metrics.increment(outcome.counter);
+    events.emit(
+        "synced", "project", pathString, "outcome", outcome.name().toLowerCase(Locale.ROOT));
+
+    if (outcome == SyncOutcome.UPDATED) {
+      resultReport.appendResult(pathString + " (updated)");
+    } else {
+      resultReport.appendAdditionalInfo(outcome.section, pathString);
+    }
+    return null;
+  }
+
+  /**
+   * @param exception a {@link Throwable} from a {@link CompletableFuture}
+   * @return the message of its cause (a {@link java.util.concurrent.CompletionException} is
+   *     unwrapped)
+   */
+  private static String getMessage(Throwable exception) {
+    Throwable cause = exception.getCause() == null ? exception : exception.getCause();
+    return cause.getMessage();
+  }
+
+  /** The result of {@link ProjectBuilder#syncProject(Path)}. */
+  private enum SyncOutcome {
+    UPDATED("Updated:", "projects_updated"),
+    UP_TO_DATE("Up to date:", "projects_up_to_date"),
+    DIVERGED("Diverged from upstream (not updated):", "projects_diverged"),
+    DIRTY("Uncommitted changes (not updated):", "projects_dirty"),
+    NO_UPSTREAM("No upstream branch (not updated):", "projects_without_upstream");
+
+    private final String section;
+    private final String counter;
+
+    SyncOutcome(String section, String counter) {
+      this.section = section;
+      this.counter = counter;
     }
   }
+
+  /** A changed project file of {@link ProjectBuilder#loadAndWatch()} which hasn't settled yet. */
+  private static final class PendingFile {
+    private final Path path;
+    private GitConfig.FileStamp stamp;
+    private long since;
+
+    PendingFile(Path path) {
+      this.path = path;
+    }
+  }
+
+  /** Reads the project documents of a YAML file or the manifest. */
+  @FunctionalInterface
+  private interface DocumentReader {
+    List<Map<String, String>> read(Path projectFile) throws IOException;
+  }
 }
@@ -2,16 +2,18 @@ package hu.zza.util.gitform;
 
 import java.io.IOException;
 import java.nio.file.FileAlreadyExistsException;
-import java.nio.file.FileVisitOption;
 import java.nio.file.Files;
 import java.nio.file.OpenOption;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
 import java.nio.file.attribute.FileAttribute;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 /**
  * An instance of this class is used to save GitHub repositories as GitForm YAML files ready to send
@@ -23,38 +25,274 @@ public class ProjectMapper {
   private final ResultReport resultReport;
   private final Path gitRoot;
   private final Path gitFormRoot;
+  private final EventLog events;
+  private final GitConfigCache gitConfigCache = new GitConfigCache();
+  private final GitBackend backend;
+  private RunMetrics metrics = new RunMetrics("save");
+  private ScanIndex lastScanIndex;
+  private GitConfig.FileStamp lastScanIndexStamp;
 
   public ProjectMapper(Settings settings) {
     this(settings, new ResultReport());
   }
 
   public ProjectMapper(Settings settings, ResultReport resultReport) {
+    this(settings, resultReport, EventLog.disabled);
+  }
+
+  public ProjectMapper(Settings settings, ResultReport resultReport, EventLog events) {
     this.settings = settings;
     this.resultReport = resultReport;
+    this.events = events;
     gitRoot = settings.getGitRoot();
     gitFormRoot = settings.getGitFormRoot();
+    backend = GitBackend.create(settings.getGitBackend(), gitConfigCache);
+  }
+
+  /** @return the {@link RunMetrics} of the last (or current) save */
+  public RunMetrics getMetrics() {
+    return metrics;
+  }
+
+  /**
+   * Saves every GitHub project from {@code gitRoot} to {@code gitFormRoot} as a YAML file. It's an
+   * incremental save, it reuses the {@link ScanIndex} of the previous one.
+   */
+  public void save() {
+    save(false);
   }
 
   /**
    * Saves every GitHub project from {@code gitRoot} to {@code gitFormRoot} as a YAML file. First,
    * it prepares the output directory ({@code gitFormRoot}). Then filtering out the parsing errors
-   * (nulls) and the rest are processed by {@link ProjectBuilder#cloneIfAbsent(GitHubProject)}.
+   * (nulls) and the rest are processed by {@link ProjectMapper#saveProjects(List)}. Finally, the
+   * {@link RunMetrics} of the run are written to {@link Settings#getMetricsPath()}. Meanwhile, the
+   * progress is streamed to the {@link EventLog} (if it's enabled).
+   *
+   * @param fullScan if true, the {@link ScanIndex} of the previous save is ignored (cold rescan)
    */
-  public void save() {
+  public void save(boolean fullScan) {
     resultReport.clear();
     resultReport.setMainObjective("Save GitHub projects");
+    metrics = new RunMetrics("save");
+    long start = System.nanoTime();
+    events.emit("run_started", "command", "save");
 
     try {
-      prepareGitFormDirectory();
-      saveProjects(collectProjects());
+      var timer = metrics.time("prepare");
+      try {
+        prepareGitFormDirectory();
+      } finally {
+        timer.stop();
+      }
+      var walker = new RepositoryWalker(settings, resultReport);
+      ScanIndex scanIndex;
+      timer = metrics.time("index");
+      try {
+        scanIndex =
+            loadScanIndex(walker.getFingerprint() + "-" + settings.getRemoteName(), fullScan);
+      } finally {
+        timer.stop();
+      }
+      List<GitHubProject> projects = collectProjects(walker, scanIndex);
+      timer = metrics.time("write");
+      try {
+        saveProjects(projects);
+      } finally {
+        timer.stop();
+      }
+      timer = metrics.time("index");
+      try {
+        saveScanIndex(scanIndex);
+      } finally {
+        timer.stop();
+      }
       resultReport.setSuccessful(true);
     } catch (IOException e) {
       resultReport.appendAdditionalInfo("Cannot save projects:", e.toString());
+      events.emit("error", "message", e.toString());
     } finally {
+      writeMetrics();
+      events.emit(
+          "run_finished",
+          "command",
+          "save",
+          "successful",
+          resultReport.isSuccessful(),
+          "ms",
+          TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
       resultReport.print();
     }
   }
 
+  /**
+   * Updates the saved projects of {@code gitFormRoot} after a change of {@code gitRoot} (used by
+   * {@link ProjectWatcher}). Unlike {@link ProjectMapper#save()}, it overwrites a project whose
+   * origin has changed, and it deletes the projects which are gone. An unchanged project file is
+   * not rewritten. The result is printed only if something has changed.
+   *
+   * @param previous the saved versions of the affected projects
+   * @param current the current versions of the affected projects (the missing ones are removed)
+   */
+  void update(Collection<GitHubProject> previous, Collection<GitHubProject> current) {
+    resultReport.setMainObjective("Update GitHub projects");
+    boolean changed = false;
+
+    try {
+      prepareGitFormDirectory();
+      changed =
+          settings.isManifestFormat()
+              ? updateManifest(previous, current)
+              : updateProjectFiles(previous, current);
+      resultReport.setSuccessful(true);
+    } catch (IOException e) {
+      resultReport.appendAdditionalInfo("Cannot update projects:", e.toString());
+      events.emit("error", "message", e.toString());
+      changed = true;
+    } finally {
+      if (changed) {
+        resultReport.print();
+      }
+      resultReport.clear();
+    }
+  }
+
+  /**
+   * @param previous the saved versions of the affected projects
+   * @param current the current versions of the affected projects
+   * @return true if a project file has been written or deleted
+   * @throws IOException if a project file cannot be read, written or deleted
+   */
+  private boolean updateProjectFiles(
+      Collection<GitHubProject> previous, Collection<GitHubProject> current) throws IOException {
+    var currentFiles =
+        current.stream().map(GitHubProject::getFileName).collect(Collectors.toSet());
+    boolean changed = false;
+
+    for (GitHubProject project : previous) {
+      if (!currentFiles.contains(project.getFileName())
+          && Files.deleteIfExists(gitFormRoot.resolve(project.getFileName()))) {
+        changed |= reportRemoved(project, current);
+      }
+    }
+    for (GitHubProject project : current) {
+      Path projectFile = gitFormRoot.resolve(project.getFileName());
+      List<String> lines = project.getExportList();
+
+      if (Files.notExists(projectFile) || !Files.readAllLines(projectFile).equals(lines)) {
+        Files.write(projectFile, lines);
+        reportSaved(project);
+        changed = true;
+      }
+    }
+    return changed;
+  }
+
+  /**
+   * @param previous the saved versions of the affected projects
+   * @param current the current versions of the affected projects
+   * @return true if the {@link GitFormManifest} has been rewritten
+   * @throws IOException if the manifest cannot be read or written
+   */
+  private boolean updateManifest(
+      Collection<GitHubProject> previous, Collection<GitHubProject> current) throws IOException {
+    Path manifestFile = settings.getManifestFile();
+    var saved = new LinkedHashMap<Path, GitHubProject>();
+    if (Files.exists(manifestFile)) {
+      GitFormManifest.read(manifestFile).forEach(p -> saved.put(p.getProjectRoot(), p));
+    }
+    boolean changed = false;
+
+    for (GitHubProject project : previous) {
+      if (saved.remove(project.getProjectRoot()) != null) {
+        changed |= reportRemoved(project, current);
+      }
+    }
+    for (GitHubProject project : current) {
+      GitHubProject old = saved.put(project.getProjectRoot(), project);
+      if (old == null || !old.getExportList().equals(project.getExportList())) {
+        reportSaved(project);
+        changed = true;
+      }
+    }
+    if (changed) {
+      GitFormManifest.write(manifestFile, saved.values());
+    }
+    return changed;
+  }
+
+  private void reportSaved(GitHubProject project) {
+    resultReport.appendResult(project.getProjectRoot().toString());
+    events.emit("project_saved", "project", project.getProjectRoot().toString());
+  }
+
+  /**
+   * Reports a removed project, unless it's just replaced (e.g. its origin has changed).
+   *
+   * @param project a previous project
+   * @param current the current versions of the affected projects
+   * @return true if it's reported as removed
+   */
+  private boolean reportRemoved(GitHubProject project, Collection<GitHubProject> current) {
+    if (current.contains(project)) {
+      return false;
+    }
+    resultReport.appendAdditionalInfo("Project removed:", project.getProjectRoot().toString());
+    events.emit("project_removed", "project", project.getProjectRoot().toString());
+    return true;
+  }
+
+  private void writeMetrics() {
+    metrics.finish();
+    try {
+      metrics.write(settings.getMetricsPath());
+    } catch (IOException e) {
+      resultReport.appendAdditionalInfo("Cannot write metrics:", e.toString());
+    }
+  }
+
+  /**
+   * If this instance has saved the index file, and it hasn't changed since then (e.g. by another
+   * process), the previous scan is taken from memory by {@link ScanIndex#next()}.
+   *
+   * @param fingerprint the fingerprint of the current {@link RepositoryWalker} and remote name
+   * @param fullScan if true, the previous scan is not loaded
+   * @return the {@link ScanIndex} of the previous save, or an empty one (with the same index file)
+   */
+  private ScanIndex loadScanIndex(String fingerprint, boolean fullScan) {
+    Path indexFile = settings.getScanIndexFile();
+
+    if (!fullScan
+        && lastScanIndex != null
+        && lastScanIndex.getFingerprint().equals(fingerprint)
+        && lastScanIndexStamp.isCurrent()) {
+      return lastScanIndex.next();
+    }
+    if (!fullScan) {
+      try {
+        return ScanIndex.load(indexFile, fingerprint);
+      } catch (IOException e) {
+        resultReport.appendAdditionalInfo("Cannot load scan index:", e.getMessage());
+      }
+    }
+    return new ScanIndex(indexFile, fingerprint);
+  }
+
+  private void saveScanIndex(ScanIndex scanIndex) {
+    lastScanIndex = null;
+    try {
+      scanIndex.save();
+      Path indexFile = settings.getScanIndexFile();
+      if (Files.exists(indexFile)) {
+        lastScanIndexStamp = GitConfig.FileStamp.of(indexFile);
+        lastScanIndex = scanIndex;
+        metrics.add("bytes_written", lastScanIndexStamp.getSize());
+      }
+    } catch (IOException e) {
+      resultReport.appendAdditionalInfo("Cannot save scan index:", e.toString());
+    }
+  }
+
   /**
    * Create {@code gitFormRoot} directory if it doesn't exist.
    *
@@ -72,11 +310,17 @@ public class ProjectMapper {
   }
 
   /**
-   * Saves GitHub projects ({@link GitHubProject} instances) one by one.
+   * Saves GitHub projects ({@link GitHubProject} instances) one by one, or into the {@link
+   * GitFormManifest} if {@link Settings#isManifestFormat()}.
    *
-   * @param projects {@link Stream<GitHubProject>} of {@link GitHubProject}
+   * @param projects {@link List<GitHubProject>} of {@link GitHubProject}
+   * @throws IOException if the manifest cannot be read or written
    */
-  private void saveProjects(List<GitHubProject> projects) {
+  private void saveProjects(List<GitHubProject> projects) throws IOException {
+    if (settings.isManifestFormat()) {
+      saveManifest(projects);
+      return;
+    }
     try {
       projects.forEach(this::safelySaveGitHubProject);
     } catch (IllegalStateException ignored) {
@@ -85,24 +329,69 @@ public class ProjectMapper {
   }
 
   /**
-   * Searches for GitHub projects and returns with them as a {@link Stream}. First, walks through
-   * the {@code gitRoot}, then filters for directories with Git projects. Finally, parse the
+   * Adds the new projects to the {@link GitFormManifest} of {@code gitFormRoot}. Like the per-file
+   * save, it doesn't override the already saved projects.
+   *
+   * @param projects {@link List<GitHubProject>} of {@link GitHubProject}
+   * @throws IOException if the manifest cannot be read or written
+   */
+  private void saveManifest(List<GitHubProject> projects) throws IOException {
+    Path manifestFile = settings.getManifestFile();
+    var saved =
+        new LinkedHashSet<>(
+            Files.exists(manifestFile) ? GitFormManifest.read(manifestFile) : List.of());
+
+    for (GitHubProject project : projects) {
+      if (saved.add(project)) {
+        resultReport.appendResult(project.getProjectRoot().toString());
+        events.emit("project_saved", "project", project.getProjectRoot().toString());
+      } else {
+        resultReport.appendAdditionalInfo(
+            "Project already exists:", project.getProjectRoot().toString());
+        emitSkipped(project);
+      }
+    }
+    GitFormManifest.write(manifestFile, saved);
+    metrics.add("bytes_written", Files.size(manifestFile));
+  }
+
+  /**
+   * Searches for GitHub projects and returns with them as a {@link List}. First, {@link
+   * RepositoryWalker} collects the Git project roots from {@code gitRoot}. Then it parses the
    * appropriate {@link Path paths} to {@link GitHubProject}. (And filter out non-GitHub projects:
-   * Without origin URL the parsing result is null.)
+   * Without origin URL the parsing result is null.) The walk and the reading of the Git configs
+   * are measured as the {@code walk} and {@code config} phases of {@link RunMetrics}.
    *
-   * @return {@link Stream<GitHubProject>} of {@link GitHubProject projects} found in {@code
-   *     gitRoot} and parsed successfully
-   * @throws IOException if {@link Files#walk(Path, FileVisitOption...)} throws
+   * @param walker the {@link RepositoryWalker} for {@code gitRoot}
+   * @param scanIndex the {@link ScanIndex} of the previous save
+   * @return {@link List<GitHubProject>} of {@link GitHubProject projects} found in {@code gitRoot}
+   *     and parsed successfully
    */
-  private List<GitHubProject> collectProjects() throws IOException {
-    try (Stream<Path> files = Files.walk(gitRoot)) {
+  List<GitHubProject> collectProjects(RepositoryWalker walker, ScanIndex scanIndex) {
+    List<Path> projectRoots;
+    var timer = metrics.time("walk");
+    try {
+      projectRoots = walker.walk(scanIndex);
+    } finally {
+      timer.stop();
+    }
+    metrics.add("directories_visited", walker.getVisitedCount());
+    metrics.add("directories_listed", walker.getListedCount());
 
-      return files
-          .filter(Files::isDirectory)
-          .filter(this::isProject)
-          .map(this::createProjectFromPath)
-          .filter(Objects::nonNull)
-          .collect(Collectors.toList());
+    long readCount = gitConfigCache.getReadCount();
+    timer = metrics.time("config");
+    try {
+      List<GitHubProject> projects =
+          projectRoots.stream()
+              .map(projectRoot -> createProjectFromPath(projectRoot, scanIndex))
+              .filter(Objects::nonNull)
+              .collect(Collectors.toList());
+
+      metrics.add("config_files_read", gitConfigCache.getReadCount() - readCount);
+      metrics.add("projects_found", projects.size());
+      return projects;
+    } finally {
+      timer.stop();
     }
   }
 
@@ -118,32 +407,28 @@ public class ProjectMapper {
     } catch (FileAlreadyExistsException ignored) {
       resultReport.appendAdditionalInfo(
           "Project already exists:", project.getProjectRoot().toString());
+      emitSkipped(project);
     } catch (IOException e) {
       resultReport.appendAdditionalInfo(
           "Cannot save project:", project.getProjectRoot().toString());
+      events.emit(
+          "error", "project", project.getProjectRoot().toString(), "message", e.toString());
     }
   }
 
+  private void emitSkipped(GitHubProject project) {
+    events.emit("skipped", "project", project.getProjectRoot().toString(), "reason", "exists");
+  }
+
   /**
-   * Checks whether this is the root of a Git project or not. If it founds a {@code .git} folder, it
-   * assumes yes.
+   * Creates the {@link GitHubProject} of one repository root (used by {@link ProjectWatcher}). The
+   * origin URL comes from the {@link GitBackend}, so an unchanged config is not read again.
    *
-   * @param path {@code Path} to the project root folder
-   * @return true if it's a possible Git project
+   * @param projectRoot the absolute {@link Path} of a repository root under {@code gitRoot}
+   * @return {@link GitHubProject} on success or null (if it cannot extract the origin URL)
    */
-  private boolean isProject(Path path) {
-    try (Stream<Path> files = Files.list(path)) {
-
-      return files
-          .filter(Files::isDirectory)
-          .map(Path::getFileName)
-          .anyMatch(s -> s.toString().equals(".git"));
-
-    } catch (IOException e) {
-      resultReport.appendAdditionalInfo(
-          "Cannot be determined whether it is a project:", path.toString());
-      return false;
-    }
+  GitHubProject readProject(Path projectRoot) {
+    return createProjectFromPath(projectRoot, new ScanIndex());
   }
 
   /**
@@ -151,15 +436,18 @@ public class ProjectMapper {
    * URL.
    *
    * @param projectRoot {@link Path} to the project root folder
+   * @param scanIndex the {@link ScanIndex} with the origin URLs of the previous save
    * @return {@link GitHubProject} on success or null (if it cannot extract the origin URL)
    */
-  private GitHubProject createProjectFromPath(Path projectRoot) {
-    String originUrl = getOriginUrl(projectRoot);
+  private GitHubProject createProjectFromPath(Path projectRoot, ScanIndex scanIndex) {
+    Path relativeRoot = gitRoot.relativize(projectRoot);
+    String originUrl = getOriginUrl(projectRoot, relativeRoot, scanIndex);
 
-    return originUrl == null
-        ? null
-        : new GitHubProject(
-            gitRoot.relativize(projectRoot), originUrl.substring(originUrl.indexOf("url = ") + 6));
+    if (originUrl == null) {
+      return null;
+    }
+    events.emit("project_discovered", "project", relativeRoot.toString(), "origin", originUrl);
+    return new GitHubProject(relativeRoot, originUrl);
   }
 
   /**
@@ -169,28 +457,42 @@ public class ProjectMapper {
    * @throws IOException if {@link Files#write(Path, Iterable, OpenOption...)} throws
    */
   private void saveGitHubProject(GitHubProject project) throws IOException {
-    Files.write(
-        gitFormRoot.resolve(
-            String.format("%s_%d.yaml", project.getProjectName(), project.hashCode())),
-        project.getExportList(),
-        StandardOpenOption.CREATE_NEW);
+    Path projectFile =
+        Files.write(
+            gitFormRoot.resolve(project.getFileName()),
+            project.getExportList(),
+            StandardOpenOption.CREATE_NEW);
+    metrics.add("bytes_written", Files.size(projectFile));
 
     resultReport.appendResult(project.getProjectRoot().toString());
+    events.emit("project_saved", "project", project.getProjectRoot().toString());
   }
 
   /**
-   * Extracts the origin URL from a Git config file.
+   * Returns the origin URL of the project. If its Git config and the files included by it haven't
+   * changed since the previous save (same modification time and size), the URL comes from the
+   * {@link ScanIndex}, otherwise from the {@link GitBackend} (by default, from the parsed config
+   * file). The remote is selected by {@link Settings#getRemoteName()}.
    *
    * @param projectRoot {@link Path} to the project root folder
-   * @return the origin URL as a {@link String}
+   * @param relativeRoot {@code projectRoot} relative to {@code gitRoot}
+   * @param scanIndex the {@link ScanIndex} with the origin URLs of the previous save
+   * @return the origin URL as a {@link String} or null
    */
-  private String getOriginUrl(Path projectRoot) {
-    try (Stream<String> lines = Files.lines(projectRoot.resolve(".git/config"))) {
+  private String getOriginUrl(Path projectRoot, Path relativeRoot, ScanIndex scanIndex) {
+    try {
+      Path configFile = GitConfig.findConfigFile(projectRoot);
+      String originUrl = scanIndex.getOriginUrl(relativeRoot, GitConfig.FileStamp.of(configFile));
 
-      return lines.filter(line -> line.contains("url = ")).findFirst().orElse(null);
+      if (originUrl == null) {
+        originUrl = backend.getRemoteUrl(projectRoot, settings.getRemoteName());
+        scanIndex.putOriginUrl(relativeRoot, gitConfigCache.get(configFile).getFiles(), originUrl);
+      }
+      return originUrl;
 
     } catch (IOException e) {
       resultReport.appendAdditionalInfo("Cannot retrieve origin URL:", projectRoot.toString());
+      events.emit("error", "project", relativeRoot.toString(), "message", e.toString());
       return null;
     }
   }
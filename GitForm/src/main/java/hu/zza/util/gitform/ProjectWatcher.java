@@ -0,0 +1,306 @@
+package hu.zza.util.gitform;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps {@code gitFormRoot} current while it's running ({@code git-form watch}): the directories
+ * of {@code gitRoot} are watched by a {@link WatchService}, and when a repository is created,
+ * moved, deleted or its origin changes, only the affected project YAMLs are updated (by {@link
+ * ProjectMapper#update(Collection, Collection)}). The YAMLs of the projects which are not present
+ * at startup (e.g. the ones saved on another device) are never deleted.
+ *
+ * <p>The watched directories are the ones visited by {@link RepositoryWalker} (so the ignore
+ * patterns and the depth limit apply), the roots of the repositories (only for their {@code .git}
+ * entry) and their {@code .git} folders (only for the {@code config} file). The working trees are
+ * not watched. The events are coalesced: after the first one, the watcher waits until there is no
+ * new event for {@value #quietMillis} ms (but at most {@value #maxDelayMillis} ms), then only the
+ * outermost changed directories are walked again. While nothing happens, the thread is blocked in
+ * {@link WatchService#take()}. If the events overflow, the whole {@code gitRoot} is walked again.
+ */
+public class ProjectWatcher {
+  private static final long quietMillis = 200;
+  private static final long maxDelayMillis = 1000;
+  private static final Path gitDirectory = Path.of(".git");
+  private static final Path configFile = Path.of("config");
+  private final Path gitRoot;
+  private final Path gitFormRoot;
+  private final EventLog events;
+  private final RepositoryWalker walker;
+  private final ProjectMapper mapper;
+  private final Map<WatchKey, Path> watchedDirectories = new HashMap<>();
+  private final Set<Path> repositories = new HashSet<>();
+  private final Map<Path, GitHubProject> projects = new HashMap<>();
+  private WatchService watchService;
+
+  public ProjectWatcher(Settings settings, ResultReport resultReport, EventLog events) {
+    this.events = events;
+    gitRoot = settings.getGitRoot();
+    gitFormRoot = settings.getGitFormRoot();
+    walker = new RepositoryWalker(settings, resultReport);
+    mapper = new ProjectMapper(settings, resultReport, events);
+  }
+
+  /**
+   * Walks {@code gitRoot}, saves the current projects, then watches it until the thread is
+   * interrupted.
+   *
+   * @throws IOException if {@code gitRoot} is not a directory, or the {@link WatchService} fails
+   * @throws InterruptedException if the thread is interrupted (the normal end of the watch)
+   */
+  public void watch() throws IOException, InterruptedException {
+    if (!Files.isDirectory(gitRoot)) {
+      throw new IOException(gitRoot + " should be a directory.");
+    }
+    try (WatchService service = gitRoot.getFileSystem().newWatchService()) {
+      watchService = service;
+      refresh(List.of(gitRoot));
+      events.emit("watch_started", "root", gitRoot.toString(), "directories", getWatchedCount());
+      System.out.printf(
+          "Watching %s (%d directories), press Ctrl+C to stop.%n%n", gitRoot, getWatchedCount());
+
+      while (true) {
+        var changed = new HashSet<Path>();
+        while (changed.isEmpty()) {
+          collect(service.take(), changed);
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxDelayMillis);
+        WatchKey key;
+        while (System.nanoTime() < deadline
+            && (key = service.poll(quietMillis, TimeUnit.MILLISECONDS)) != null) {
+          collect(key, changed);
+        }
+        refresh(changed);
+      }
+    } finally {
+      watchService = null;
+      watchedDirectories.clear();
+    }
+  }
+
+  /** @return the number of watched directories (including the {@code .git} folders) */
+  public int getWatchedCount() {
+    return watchedDirectories.size();
+  }
+
+  /**
+   * Collects the directories affected by the events of {@code key}, and resets it.
+   *
+   * @param key a signalled {@link WatchKey}
+   * @param changed the affected directories so far
+   */
+  private void collect(WatchKey key, Set<Path> changed) {
+    Path directory = watchedDirectories.get(key);
+
+    for (WatchEvent<?> event : key.pollEvents()) {
+      if (event.kind() == OVERFLOW) {
+        changed.add(gitRoot);
+      } else if (directory != null) {
+        Path affected = getAffectedDirectory(directory, (Path) event.context());
+        if (affected != null) {
+          changed.add(affected);
+        }
+      }
+    }
+    if (!key.reset()) {
+      watchedDirectories.remove(key);
+    }
+  }
+
+  /**
+   * @param directory a watched directory
+   * @param name the name of the created, deleted or modified entry in {@code directory}
+   * @return the directory to walk again, or null if the event doesn't matter (e.g. a change of
+   *     {@code .git/index})
+   */
+  private Path getAffectedDirectory(Path directory, Path name) {
+    if (gitDirectory.equals(directory.getFileName())
+        && repositories.contains(directory.getParent())) {
+      return configFile.equals(name) ? directory.getParent() : null;
+    }
+    if (gitDirectory.equals(name)) {
+      return directory;
+    }
+    if (repositories.contains(directory)) {
+      return null;
+    }
+    Path child = directory.resolve(name);
+    return child.startsWith(gitFormRoot) ? null : child;
+  }
+
+  /**
+   * Walks the changed directories again, updates the watches, and saves the changed projects. A
+   * directory modified between its listing and the registration of its watch is walked again, so
+   * no change is lost.
+   *
+   * @param changed the affected directories (the nested ones are covered by their ancestors)
+   */
+  private void refresh(Collection<Path> changed) {
+    var previous = new ArrayList<GitHubProject>();
+    var roots = new TreeSet<Path>();
+    var registered = new HashSet<WatchKey>();
+    var refreshed = new ArrayList<Path>();
+    List<Path> pending = getOutermost(changed);
+
+    while (!pending.isEmpty()) {
+      var stale = new HashSet<Path>();
+      for (Path directory : pending) {
+        forgetProjects(directory, previous);
+        roots.removeIf(root -> root.startsWith(directory));
+        var scanIndex = new ScanIndex();
+        roots.addAll(walker.walk(directory, scanIndex));
+        stale.addAll(register(scanIndex, registered));
+        refreshed.add(directory);
+      }
+      pending = getOutermost(stale);
+    }
+    refreshed.forEach(directory -> forgetWatches(directory, registered));
+
+    var current = new ArrayList<GitHubProject>();
+    for (Path root : roots) {
+      repositories.add(root);
+      GitHubProject project = mapper.readProject(root);
+      if (project != null) {
+        projects.put(root, project);
+        current.add(project);
+      }
+    }
+    var previousExports =
+        previous.stream()
+            .collect(
+                Collectors.toMap(
+                    GitHubProject::getProjectRoot, GitHubProject::getExportList, (a, b) -> a));
+    var unchanged =
+        current.stream()
+            .filter(p -> p.getExportList().equals(previousExports.get(p.getProjectRoot())))
+            .collect(Collectors.toSet());
+    previous.removeAll(unchanged);
+    current.removeAll(unchanged);
+
+    if (!previous.isEmpty() || !current.isEmpty()) {
+      mapper.update(previous, current);
+    }
+  }
+
+  /**
+   * @param directories absolute directories
+   * @return the sorted directories without the ones inside another one
+   */
+  private static List<Path> getOutermost(Collection<Path> directories) {
+    var outermost = new ArrayList<Path>();
+    for (Path directory : new TreeSet<>(directories)) {
+      if (outermost.stream().noneMatch(directory::startsWith)) {
+        outermost.add(directory);
+      }
+    }
+    return outermost;
+  }
+
+  /**
+   * Forgets the repositories inside {@code directory}, they are found again by the next walk.
+   *
+   * @param directory a changed directory
+   * @param previous the list to collect the known projects of {@code directory} into
+   */
+  private void forgetProjects(Path directory, List<GitHubProject> previous) {
+    repositories.removeIf(root -> root.startsWith(directory));
+    projects
+        .entrySet()
+        .removeIf(
+            e -> {
+              if (e.getKey().startsWith(directory)) {
+                previous.add(e.getValue());
+                return true;
+              }
+              return false;
+            });
+  }
+
+  /**
+   * Cancels the watches inside {@code directory} which are not registered again by the last walk
+   * (the directory is deleted, or moved out of {@code gitRoot}). A directory moved inside {@code
+   * gitRoot} keeps its {@link WatchKey}, it's just mapped to its new path by {@link
+   * #register(ScanIndex, Set)}.
+   *
+   * @param directory a walked directory
+   * @param registered the {@link WatchKey WatchKeys} registered by the walks
+   */
+  private void forgetWatches(Path directory, Set<WatchKey> registered) {
+    watchedDirectories
+        .entrySet()
+        .removeIf(
+            e -> {
+              if (e.getValue().startsWith(directory) && !registered.contains(e.getKey())) {
+                e.getKey().cancel();
+                return true;
+              }
+              return false;
+            });
+  }
+
+  /**
+   * Watches the directories visited by a walk: a plain directory for its new and deleted entries,
+   * a repository root for its {@code .git} entry, and the {@code .git} folder for its config.
+   *
+   * @param scanIndex the {@link ScanIndex} filled by the walk
+   * @param registered the set to collect the registered {@link WatchKey WatchKeys} into
+   * @return the plain directories which have been modified since they were listed by the walk
+   */
+  private Set<Path> register(ScanIndex scanIndex, Set<WatchKey> registered) {
+    var stale = new HashSet<Path>();
+
+    for (var e : scanIndex.getCurrent().entrySet()) {
+      Path directory = gitRoot.resolve(e.getKey());
+      if (directory.startsWith(gitFormRoot)) {
+        continue;
+      }
+      try {
+        register(directory, registered, ENTRY_CREATE, ENTRY_DELETE);
+
+        if (e.getValue().isRepository()) {
+          Path gitFolder = directory.resolve(gitDirectory);
+          if (Files.isDirectory(gitFolder, LinkOption.NOFOLLOW_LINKS)) {
+            register(gitFolder, registered, ENTRY_CREATE, ENTRY_MODIFY);
+          }
+        } else if (getModified(directory) != e.getValue().getModified()) {
+          stale.add(directory);
+        }
+      } catch (IOException ignored) {
+        // It's deleted (or moved) since the walk, the event of its parent is on the way.
+      }
+    }
+    return stale;
+  }
+
+  private void register(Path directory, Set<WatchKey> registered, WatchEvent.Kind<?>... kinds)
+      throws IOException {
+    WatchKey key = directory.register(watchService, kinds);
+    watchedDirectories.put(key, directory);
+    registered.add(key);
+  }
+
+  private static long getModified(Path directory) throws IOException {
+    return Files.getLastModifiedTime(directory, LinkOption.NOFOLLOW_LINKS)
+        .to(TimeUnit.NANOSECONDS);
+  }
+}
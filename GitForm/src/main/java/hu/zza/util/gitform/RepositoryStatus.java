@@ -0,0 +1,194 @@
+package hu.zza.util.gitform;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The status of a working tree: its branch, the distance from the upstream branch, and the number
+ * of staged, unstaged, untracked and conflicted files. It's parsed from the output of {@code git
+ * status --porcelain=v2 --branch}, which is stable across Git versions and languages.
+ */
+public final class RepositoryStatus {
+  /** The branch of a detached {@code HEAD}. */
+  public static final String detached = "(detached)";
+
+  private final String branch;
+  private final String upstream;
+  private final int ahead;
+  private final int behind;
+  private final int staged;
+  private final int unstaged;
+  private final int untracked;
+  private final int conflicted;
+
+  public RepositoryStatus(
+      String branch,
+      String upstream,
+      int ahead,
+      int behind,
+      int staged,
+      int unstaged,
+      int untracked,
+      int conflicted) {
+    this.branch = branch;
+    this.upstream = upstream;
+    this.ahead = ahead;
+    this.behind = behind;
+    this.staged = staged;
+    this.unstaged = unstaged;
+    this.untracked = untracked;
+    this.conflicted = conflicted;
+  }
+
+  /**
+   * Parses the output of {@code git status --porcelain=v2 --branch}.
+   *
+   * @param porcelain the output of the command
+   * @return the parsed {@link RepositoryStatus}
+   * @throws IllegalArgumentException if a line is malformed
+   */
+  public static RepositoryStatus parse(String porcelain) {
+    String branch = detached;
+    String upstream = "";
+    int ahead = 0;
+    int behind = 0;
+    int staged = 0;
+    int unstaged = 0;
+    int untracked = 0;
+    int conflicted = 0;
+
+    for (String line : porcelain.split("\n")) {
+      if (line.startsWith("# branch.head ")) {
+        branch = line.substring(14);
+      } else if (line.startsWith("# branch.upstream ")) {
+        upstream = line.substring(18);
+      } else if (line.startsWith("# branch.ab ")) {
+        String[] counts = line.substring(12).split(" ");
+        ahead = Integer.parseInt(counts[0].substring(1));
+        behind = Integer.parseInt(counts[1].substring(1));
+      } else if (line.startsWith("1 ") || line.startsWith("2 ")) {
+        if (line.length() < 4) {
+          throw new IllegalArgumentException("Malformed status line: " + line);
+        }
+        staged += line.charAt(2) == '.' ? 0 : 1;
+        unstaged += line.charAt(3) == '.' ? 0 : 1;
+      } else if (line.startsWith("u ")) {
+        conflicted++;
+      } else if (line.startsWith("? ")) {
+        untracked++;
+      }
+    }
+    return new RepositoryStatus(
+        branch, upstream, ahead, behind, staged, unstaged, untracked, conflicted);
+  }
+
+  public String getBranch() {
+    return branch;
+  }
+
+  /** @return the upstream branch (e.g. {@code origin/main}), or empty if there is none */
+  public String getUpstream() {
+    return upstream;
+  }
+
+  public int getAhead() {
+    return ahead;
+  }
+
+  public int getBehind() {
+    return behind;
+  }
+
+  public int getStaged() {
+    return staged;
+  }
+
+  public int getUnstaged() {
+    return unstaged;
+  }
+
+  public int getUntracked() {
+    return untracked;
+  }
+
+  public int getConflicted() {
+    return conflicted;
+  }
+
+  /** @return true if there is nothing to commit (untracked files included) */
+  public boolean isClean() {
+    return staged + unstaged + untracked + conflicted == 0;
+  }
+
+  /** @return true if it's clean, and it's neither ahead of nor behind its upstream */
+  public boolean isSynchronized() {
+    return isClean() && !upstream.isEmpty() && ahead == 0 && behind == 0;
+  }
+
+  /**
+   * Returns a short, human-readable summary, e.g. {@code [main] ahead 2, 1 unstaged, 3 untracked}.
+   */
+  @Override
+  public String toString() {
+    List<String> parts = new ArrayList<>();
+
+    if (upstream.isEmpty()) {
+      parts.add("no upstream");
+    } else {
+      addIfPositive(parts, ahead, "ahead %d");
+      addIfPositive(parts, behind, "behind %d");
+    }
+    addIfPositive(parts, staged, "%d staged");
+    addIfPositive(parts, unstaged, "%d unstaged");
+    addIfPositive(parts, untracked, "%d untracked");
+    addIfPositive(parts, conflicted, "%d conflicted");
+
+    if (parts.isEmpty()) {
+      parts.add("up to date, clean");
+    } else if (isClean()) {
+      parts.add("clean");
+    }
+    return String.format("[%s] %s", branch, String.join(", ", parts));
+  }
+
+  private static void addIfPositive(List<String> parts, int count, String pattern) {
+    if (count > 0) {
+      parts.add(String.format(pattern, count));
+    }
+  }
+
+  /**
+   * @return the fields in the (tab-separated) format of {@link StatusCache}
+   * @see RepositoryStatus#fromFields(String[], int)
+   */
+  String toFields() {
+    return String.join(
+        "\t",
+        branch,
+        upstream,
+        String.valueOf(ahead),
+        String.valueOf(behind),
+        String.valueOf(staged),
+        String.valueOf(unstaged),
+        String.valueOf(untracked),
+        String.valueOf(conflicted));
+  }
+
+  /**
+   * @param fields the split line of {@link StatusCache}
+   * @param offset the index of the first field made by {@link RepositoryStatus#toFields()}
+   * @return the parsed {@link RepositoryStatus}
+   * @throws RuntimeException if the fields are malformed
+   */
+  static RepositoryStatus fromFields(String[] fields, int offset) {
+    return new RepositoryStatus(
+        fields[offset],
+        fields[offset + 1],
+        Integer.parseInt(fields[offset + 2]),
+        Integer.parseInt(fields[offset + 3]),
+        Integer.parseInt(fields[offset + 4]),
+        Integer.parseInt(fields[offset + 5]),
+        Integer.parseInt(fields[offset + 6]),
+        Integer.parseInt(fields[offset + 7]));
+  }
+}
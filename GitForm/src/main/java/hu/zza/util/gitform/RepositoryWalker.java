@@ -0,0 +1,311 @@
+package hu.zza.util.gitform;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Discovers Git repositories under {@code gitRoot}. Unlike {@link Files#walk(Path,
+ * java.nio.file.FileVisitOption...)}, it stops descending at the first repository root, so it
+ * never visits {@code .git/objects} or the working trees of the projects. Every directory costs
+ * one listing, and the check for {@code .git} (a folder or a gitdir file) is a single stat.
+ *
+ * <p>The subtrees are processed in parallel on a {@link ForkJoinPool}. Directories can be excluded
+ * with glob patterns in {@code gitRoot/.gitformignore} (one per line, {@code #} starts a comment):
+ * a pattern without {@code /} is matched against the directory name (e.g. {@code node_modules}),
+ * otherwise against the path relative to {@code gitRoot} (e.g. {@code archive/**}). The depth of
+ * the walk is limited by {@link Settings#getMaxDepth()}.
+ *
+ * <p>With a {@link ScanIndex} of a previous walk, unchanged directories (by modification time) are
+ * not listed again, their subdirectories are taken from the index.
+ */
+public class RepositoryWalker {
+  public static final String ignoreFileName = ".gitformignore";
+  private static final Path gitDirectory = Path.of(".git");
+  private final Path gitRoot;
+  private final int maxDepth;
+  private final int parallelism;
+  private final ResultReport resultReport;
+  private final List<PathMatcher> nameMatchers = new ArrayList<>();
+  private final List<PathMatcher> pathMatchers = new ArrayList<>();
+  private final List<String> ignorePatterns;
+  private final LongAdder visitedCount = new LongAdder();
+  private final LongAdder listedCount = new LongAdder();
+
+  public RepositoryWalker(Settings settings, ResultReport resultReport) {
+    this(
+        settings.getGitRoot(),
+        settings.getMaxDepth(),
+        settings.getParallelism(),
+        resultReport,
+        readIgnoreFile(settings.getGitRoot().resolve(ignoreFileName), resultReport));
+  }
+
+  public RepositoryWalker(
+      Path gitRoot,
+      int maxDepth,
+      int parallelism,
+      ResultReport resultReport,
+      Collection<String> ignorePatterns) {
+    this.gitRoot = gitRoot;
+    this.maxDepth = maxDepth;
+    this.parallelism = parallelism;
+    this.resultReport = resultReport;
+    this.ignorePatterns = List.copyOf(ignorePatterns);
+    ignorePatterns.forEach(this::addIgnorePattern);
+  }
+
+  /**
+   * @param ignoreFile {@link Path} of a {@code .gitformignore} file, it may not exist
+   * @param resultReport the {@link ResultReport} for the read error
+   * @return the patterns of the file without comments and blank lines
+   */
+  private static List<String> readIgnoreFile(Path ignoreFile, ResultReport resultReport) {
+    if (Files.notExists(ignoreFile)) {
+      return List.of();
+    }
+    try (Stream<String> lines = Files.lines(ignoreFile)) {
+      return lines
+          .map(String::strip)
+          .filter(line -> !line.isEmpty() && !line.startsWith("#"))
+          .collect(Collectors.toList());
+    } catch (IOException e) {
+      resultReport.appendAdditionalInfo("Cannot read ignore file:", ignoreFile.toString());
+      return List.of();
+    }
+  }
+
+  private void addIgnorePattern(String pattern) {
+    String glob = pattern.endsWith("/") ? pattern.substring(0, pattern.length() - 1) : pattern;
+
+    if (glob.contains("/")) {
+      glob = glob.startsWith("/") ? glob.substring(1) : glob;
+      pathMatchers.add(FileSystems.getDefault().getPathMatcher("glob:" + glob));
+    } else {
+      nameMatchers.add(FileSystems.getDefault().getPathMatcher("glob:" + glob));
+    }
+  }
+
+  /**
+   * Walks through {@code gitRoot} and collects the roots of the Git repositories.
+   *
+   * @return the sorted {@link List} of the absolute repository roots
+   */
+  public List<Path> walk() {
+    return walk(new ScanIndex());
+  }
+
+  /**
+   * Walks through {@code gitRoot} and collects the roots of the Git repositories. It reuses the
+   * previous scan of {@code scanIndex} and records the current one into it.
+   *
+   * @param scanIndex the {@link ScanIndex} made with {@link RepositoryWalker#getFingerprint()}
+   * @return the sorted {@link List} of the absolute repository roots
+   */
+  public List<Path> walk(ScanIndex scanIndex) {
+    return walk(gitRoot, scanIndex);
+  }
+
+  /**
+   * Walks through a subtree of {@code gitRoot} (e.g. a new directory seen by {@link
+   * ProjectWatcher}) with the same ignore patterns and depth limit as a whole walk.
+   *
+   * @param directory an absolute directory under (or equal to) {@code gitRoot}
+   * @param scanIndex the {@link ScanIndex} to record the visited directories into
+   * @return the sorted {@link List} of the absolute repository roots, empty if {@code directory}
+   *     doesn't exist (anymore), or it's ignored
+   */
+  public List<Path> walk(Path directory, ScanIndex scanIndex) {
+    Path relative = gitRoot.relativize(directory);
+    int depth = relative.toString().isEmpty() ? 0 : relative.getNameCount();
+    if (depth > maxDepth || depth > 0 && isIgnored(directory)) {
+      return List.of();
+    }
+    var found = new ConcurrentLinkedQueue<Path>();
+    var pool = new ForkJoinPool(parallelism);
+    try {
+      long modified = getModified(directory);
+      if (modified != Long.MIN_VALUE) {
+        pool.invoke(new DirectoryTask(directory, modified, depth, scanIndex, found));
+      }
+    } finally {
+      pool.shutdown();
+    }
+    return found.stream().sorted().collect(Collectors.toList());
+  }
+
+  /** @return the number of directories visited by the walks of this walker */
+  public long getVisitedCount() {
+    return visitedCount.sum();
+  }
+
+  /**
+   * @return the number of directories listed by the walks of this walker (the unchanged ones are
+   *     not listed, their subdirectories come from the {@link ScanIndex})
+   */
+  public long getListedCount() {
+    return listedCount.sum();
+  }
+
+  /**
+   * A {@link ScanIndex} is reusable only with the same walker settings (root, depth limit and
+   * ignore patterns). This fingerprint identifies them.
+   *
+   * @return a short, hexadecimal {@link String}
+   */
+  public String getFingerprint() {
+    return Integer.toHexString(Objects.hash(gitRoot, maxDepth, ignorePatterns));
+  }
+
+  /**
+   * Checks whether this is the root of a Git project or not. If it finds a {@code .git} folder (or
+   * a gitdir file of a worktree or submodule), it assumes yes.
+   *
+   * @param directory {@link Path} of a directory
+   * @return true if it's a possible Git project
+   */
+  private boolean isProject(Path directory) {
+    return Files.exists(directory.resolve(gitDirectory), LinkOption.NOFOLLOW_LINKS);
+  }
+
+  /**
+   * @param directory a {@link Path} under {@code gitRoot}
+   * @return true if one of the {@code .gitformignore} patterns matches
+   */
+  private boolean isIgnored(Path directory) {
+    Path name = directory.getFileName();
+    if (nameMatchers.stream().anyMatch(m -> m.matches(name))) {
+      return true;
+    }
+    Path relative = gitRoot.relativize(directory);
+    return pathMatchers.stream().anyMatch(m -> m.matches(relative));
+  }
+
+  /**
+   * @param directory {@link Path} of a directory to list
+   * @return the subdirectories (without symbolic links and ignored ones) mapped to their
+   *     modification time
+   */
+  private Map<Path, Long> listSubdirectories(Path directory) {
+    var subdirectories = new HashMap<Path, Long>();
+    listedCount.increment();
+
+    try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+      for (Path entry : entries) {
+        if (isIgnored(entry)) {
+          continue;
+        }
+        long modified = getModified(entry);
+        if (modified != Long.MIN_VALUE) {
+          subdirectories.put(entry, modified);
+        }
+      }
+    } catch (IOException e) {
+      resultReport.appendAdditionalInfo("Cannot read directory:", directory.toString());
+    }
+    return subdirectories;
+  }
+
+  /**
+   * @param path {@link Path} of a possible directory
+   * @return the modification time in nanoseconds, or {@link Long#MIN_VALUE} if it's not a
+   *     directory (or a symbolic link to a directory)
+   */
+  private long getModified(Path path) {
+    try {
+      var attributes =
+          Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+      return attributes.isDirectory()
+          ? attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS)
+          : Long.MIN_VALUE;
+    } catch (IOException e) {
+      return Long.MIN_VALUE;
+    }
+  }
+
+  /**
+   * Processes one directory, and forks a new task for every subdirectory. If the directory hasn't
+   * changed since the previous scan, neither the {@code .git} check nor the listing is needed.
+   */
+  private class DirectoryTask extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+    private final Path directory;
+    private final long modified;
+    private final int depth;
+    private final ScanIndex scanIndex;
+    private final Collection<Path> found;
+
+    DirectoryTask(
+        Path directory, long modified, int depth, ScanIndex scanIndex, Collection<Path> found) {
+      this.directory = directory;
+      this.modified = modified;
+      this.depth = depth;
+      this.scanIndex = scanIndex;
+      this.found = found;
+    }
+
+    @Override
+    protected void compute() {
+      Path relative = gitRoot.relativize(directory);
+      ScanIndex.Entry previous = scanIndex.getPrevious(relative);
+      boolean unchanged = previous != null && previous.getModified() == modified;
+      visitedCount.increment();
+
+      if (unchanged ? previous.isRepository() : isProject(directory)) {
+        scanIndex.putRepository(relative, modified);
+        found.add(directory);
+        return;
+      }
+      scanIndex.putDirectory(relative, modified);
+
+      if (depth >= maxDepth) {
+        return;
+      }
+      Map<Path, Long> subdirectories =
+          unchanged ? getPreviousSubdirectories(relative) : listSubdirectories(directory);
+
+      invokeAll(
+          subdirectories.entrySet().stream()
+              .map(
+                  e ->
+                      new DirectoryTask(e.getKey(), e.getValue(), depth + 1, scanIndex, found))
+              .collect(Collectors.toList()));
+    }
+
+    /**
+     * @param relative the unchanged directory relative to {@code gitRoot}
+     * @return the subdirectories of the previous scan (still existing ones) mapped to their
+     *     modification time
+     */
+    private Map<Path, Long> getPreviousSubdirectories(Path relative) {
+      var subdirectories = new HashMap<Path, Long>();
+
+      for (Path child : scanIndex.getPreviousChildren(relative)) {
+        Path subdirectory = gitRoot.resolve(child);
+        long childModified = getModified(subdirectory);
+        if (childModified != Long.MIN_VALUE) {
+          subdirectories.put(subdirectory, childModified);
+        }
+      }
+      return subdirectories;
+    }
+  }
+}
@@ -1,17 +1,30 @@
 package hu.zza.util.gitform;
 
-import java.util.HashMap;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.util.Map;
-import java.util.Map.Entry;
-import java.util.SortedSet;
-import java.util.TreeSet;
-import java.util.stream.Collectors;
-
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * A sorted, sectioned summary of a run. It's thread-safe without locking: the results and the
+ * sections are kept in concurrent skip lists, so any number of workers can append to it at the
+ * same time, and it's always sorted (nothing to merge or sort at the end).
+ *
+ * <p>It's rendered straight to an {@link Appendable} (e.g. a {@link Writer} or a {@link
+ * java.io.PrintStream}) line by line by {@link ResultReport#render(Appendable)}, so a report with
+ * tens of thousands of entries is never built as one big {@link String}.
+ */
 public class ResultReport {
-  private final SortedSet<String> mainResults = new TreeSet<>();
-  private final Map<String, SortedSet<String>> additionalInfo = new HashMap<>();
-  private String mainObjective = "-";
-  private boolean successful = false;
+  private static final String lineSeparator = System.lineSeparator();
+  private final NavigableSet<String> mainResults = new ConcurrentSkipListSet<>();
+  private final Map<String, NavigableSet<String>> additionalInfo = new ConcurrentSkipListMap<>();
+  private volatile String mainObjective = "-";
+  private volatile boolean successful = false;
 
   public ResultReport() {
     this("-");
@@ -53,62 +66,95 @@ public class ResultReport {
    * @param info one line of additional information
    */
   public void appendAdditionalInfo(String section, String info) {
-    additionalInfo.computeIfAbsent(section, k -> new TreeSet<>());
-    additionalInfo.get(section).add(String.format("\t\t- %s%n", info));
+    additionalInfo.computeIfAbsent(section, k -> new ConcurrentSkipListSet<>()).add(info);
   }
 
   /**
    * Prints {@link ResultReport} to the console as a formatted summary given by {@link
-   * ResultReport#toString()}.
+   * ResultReport#render(Appendable)}.
    */
   public void print() {
-    System.out.println(this);
+    try {
+      Writer writer = new BufferedWriter(new OutputStreamWriter(System.out), 1 << 16);
+      render(writer);
+      writer.write(lineSeparator);
+      writer.flush();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Writes the formatted, multi-line summary of {@link ResultReport} to {@code out}. The aim is to
+   * provide a nice, human-readable text ready to print out to the console or concatenate with
+   * other formatted outputs. The entries appended during the rendering may or may not be included.
+   *
+   * @param out the target, e.g. a {@link Writer} (buffered, if it's a file or a stream)
+   * @throws IOException if {@code out} throws
+   */
+  public void render(Appendable out) throws IOException {
+    out.append('[')
+        .append(successful ? "done" : "fail")
+        .append("] ")
+        .append(mainObjective)
+        .append(lineSeparator)
+        .append(lineSeparator)
+        .append("RESULT")
+        .append(lineSeparator);
+    renderMainResults(out);
+
+    out.append(lineSeparator).append(lineSeparator).append("ADDITIONAL INFO").append(lineSeparator);
+    renderAdditionalInfo(out);
+    out.append(lineSeparator);
   }
 
   /**
    * Returns the {@link String} representation of {@link ResultReport} as a formatted, multi-line
-   * summary. The aim is to provide a nice, human-readable text ready to print out to the console or
-   * concatenate with other formatted outputs.
+   * summary. For large reports, {@link ResultReport#render(Appendable)} is cheaper.
    *
    * @return the formatted summary of {@link ResultReport}
    */
   @Override
   public String toString() {
-    return String.format(
-        "[%s] %s%n%n%S%n%s%n%n%S%n%s%n",
-        successful ? "done" : "fail",
-        mainObjective,
-        "Result",
-        getMainResultsAsString(),
-        "Additional info",
-        getAdditionalInfoAsString());
+    var stringBuilder = new StringBuilder();
+    try {
+      render(stringBuilder);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return stringBuilder.toString();
   }
 
-  /** @return a multi-line {@link String} contains the whole {@code mainResults} list */
-  private String getMainResultsAsString() {
-
+  /**
+   * @param out the target of {@link ResultReport#render(Appendable)}
+   * @throws IOException if {@code out} throws
+   */
+  private void renderMainResults(Appendable out) throws IOException {
     if (mainResults.isEmpty()) {
-      return "\t- No result" + System.lineSeparator();
+      out.append("\t- No result").append(lineSeparator);
+      return;
+    }
+    for (String result : mainResults) {
+      out.append("\t- ").append(result).append(lineSeparator);
     }
-    return mainResults.stream()
-        .map(s -> "\t- " + s + System.lineSeparator())
-        .collect(Collectors.joining());
   }
 
-  /** @return a multi-line {@link String} contains the whole {@code additionalInfo} map */
-  private String getAdditionalInfoAsString() {
-
+  /**
+   * @param out the target of {@link ResultReport#render(Appendable)}
+   * @throws IOException if {@code out} throws
+   */
+  private void renderAdditionalInfo(Appendable out) throws IOException {
     if (additionalInfo.isEmpty()) {
-      return "\t- No additional info" + System.lineSeparator();
+      out.append("\t- No additional info").append(lineSeparator);
+      return;
+    }
+    for (var section : additionalInfo.entrySet()) {
+      out.append(lineSeparator).append('\t').append(section.getKey()).append(lineSeparator);
+
+      for (String info : section.getValue()) {
+        out.append("\t\t- ").append(info).append(lineSeparator);
+      }
     }
-    var stringBuilder = new StringBuilder();
-    additionalInfo.entrySet().stream()
-        .sorted(Entry.comparingByKey())
-        .forEach(
-            e ->
-                stringBuilder.append(
-                    String.format("%n\t%s%n%s", e.getKey(), String.join("", e.getValue()))));
-    return stringBuilder.toString();
   }
 
   public void clear() {
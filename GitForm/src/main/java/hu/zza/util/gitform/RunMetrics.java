@@ -0,0 +1,290 @@
+package hu.zza.util.gitform;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongFunction;
+
+/**
+ * Thread-safe measurements of one {@code save} or {@code load} run: the time spent in the phases,
+ * counters (directories visited, config files read, bytes written, etc.), the latency histogram of
+ * the clones and the peak number of concurrent Git processes.
+ *
+ * <p>The phase times are summed over the threads, so a phase running on more workers in parallel
+ * (e.g. {@code clone}) can take longer than the whole run ({@code duration}).
+ *
+ * <p>At the end of the run, {@link RunMetrics#write(Path)} saves them as {@code <command>.json} and
+ * as {@code <command>.prom} (Prometheus text format, e.g. for the textfile collector of the node
+ * exporter).
+ */
+public class RunMetrics {
+  /** The upper bounds of the clone latency buckets in seconds (the last one is +Inf). */
+  private static final double[] latencyBuckets = {0.5, 1, 2, 5, 10, 30, 60, 120, 300};
+
+  private static final String prefix = "gitform_";
+  private final String command;
+  private final long startTime = System.nanoTime();
+  private final Instant startInstant = Instant.now();
+  private final Map<String, LongAdder> phases = new ConcurrentHashMap<>();
+  private final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+  private final AtomicLongArray latencyCounts = new AtomicLongArray(latencyBuckets.length + 1);
+  private final LongAdder latencySum = new LongAdder();
+  private final AtomicInteger processes = new AtomicInteger();
+  private final AtomicInteger peakProcesses = new AtomicInteger();
+  private volatile long endTime = -1;
+
+  /** @param command the name of the measured command, e.g. {@code save} */
+  public RunMetrics(String command) {
+    this.command = command;
+  }
+
+  public String getCommand() {
+    return command;
+  }
+
+  /**
+   * Starts measuring a phase. It's meant to be stopped in a finally block:
+   *
+   * <pre>{@code
+   * var timer = metrics.time("walk");
+   * try {
+   *   ...
+   * } finally {
+   *   timer.stop();
+   * }
+   * }</pre>
+   *
+   * @param phase the name of the phase
+   * @return a {@link Timer} which adds the elapsed time to {@code phase} when it's stopped
+   */
+  public Timer time(String phase) {
+    return new Timer(phases.computeIfAbsent(phase, k -> new LongAdder()));
+  }
+
+  /** @param counter the name of the counter to increase by one */
+  public void increment(String counter) {
+    add(counter, 1);
+  }
+
+  /**
+   * @param counter the name of the counter
+   * @param value the value to add to the counter
+   */
+  public void add(String counter, long value) {
+    counters.computeIfAbsent(counter, k -> new LongAdder()).add(value);
+  }
+
+  /**
+   * @param phase the name of the phase
+   * @return the time spent in {@code phase} in nanoseconds (0 if it's unknown)
+   */
+  public long getPhaseNanos(String phase) {
+    LongAdder nanos = phases.get(phase);
+    return nanos == null ? 0 : nanos.sum();
+  }
+
+  /**
+   * @param counter the name of the counter
+   * @return the value of the counter (0 if it's unknown)
+   */
+  public long getCount(String counter) {
+    LongAdder value = counters.get(counter);
+    return value == null ? 0 : value.sum();
+  }
+
+  /** @param nanos the duration of a clone in nanoseconds */
+  public void recordCloneLatency(long nanos) {
+    double seconds = nanos / 1e9;
+    int bucket = 0;
+
+    while (bucket < latencyBuckets.length && seconds > latencyBuckets[bucket]) {
+      bucket++;
+    }
+    latencyCounts.incrementAndGet(bucket);
+    latencySum.add(nanos);
+  }
+
+  /** Must be called when a Git process starts, it keeps track of the peak concurrency. */
+  public void processStarted() {
+    int running = processes.incrementAndGet();
+    peakProcesses.accumulateAndGet(running, Math::max);
+  }
+
+  /** Must be called when a Git process (started by {@link #processStarted()}) has finished. */
+  public void processFinished() {
+    processes.decrementAndGet();
+  }
+
+  public int getPeakProcesses() {
+    return peakProcesses.get();
+  }
+
+  /** Marks the end of the run. Without calling it, the duration lasts until the export. */
+  public void finish() {
+    endTime = System.nanoTime();
+  }
+
+  /**
+   * Writes the metrics to {@code directory} as {@code <command>.json} and {@code <command>.prom}.
+   * The files are replaced atomically, so a collector never reads a half-written file.
+   *
+   * @param directory the {@link Path} of the metrics folder (it's created if it doesn't exist)
+   * @throws IOException if the files cannot be written
+   */
+  public void write(Path directory) throws IOException {
+    Files.createDirectories(directory);
+    writeAtomically(directory.resolve(command + ".json"), toJson());
+    writeAtomically(directory.resolve(command + ".prom"), toPrometheus());
+  }
+
+  private static void writeAtomically(Path file, String content) throws IOException {
+    Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+    Files.writeString(temporary, content, StandardCharsets.UTF_8);
+    Files.move(
+        temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /** @return the metrics as a JSON object */
+  public String toJson() {
+    var json = new StringBuilder();
+    json.append("{\n")
+        .append(String.format("  \"command\": \"%s\",\n", command))
+        .append(String.format("  \"start\": \"%s\",\n", startInstant))
+        .append(String.format("  \"durationSeconds\": %s,\n", seconds(getDurationNanos())))
+        .append("  \"phaseSeconds\": {");
+
+    appendJsonEntries(json, snapshot(phases), RunMetrics::seconds);
+    json.append("},\n  \"counters\": {");
+    appendJsonEntries(json, snapshot(counters), String::valueOf);
+    json.append("},\n")
+        .append(String.format("  \"peakProcesses\": %d,\n", peakProcesses.get()))
+        .append("  \"cloneLatency\": {\n")
+        .append(String.format("    \"count\": %d,\n", getLatencyCount()))
+        .append(String.format("    \"sumSeconds\": %s,\n", seconds(latencySum.sum())))
+        .append("    \"buckets\": {");
+
+    long cumulative = 0;
+    for (int i = 0; i <= latencyBuckets.length; i++) {
+      cumulative += latencyCounts.get(i);
+      json.append(i == 0 ? "" : ", ")
+          .append(String.format("\"%s\": %d", getBucketLabel(i), cumulative));
+    }
+    return json.append("}\n  }\n}\n").toString();
+  }
+
+  /** @return the metrics in the Prometheus text exposition format */
+  public String toPrometheus() {
+    var text = new StringBuilder();
+    String labels = String.format("command=\"%s\"", command);
+
+    appendMetric(text, "run_duration_seconds", "gauge", "Wall time of the run.");
+    text.append(sample("run_duration_seconds", labels, seconds(getDurationNanos())));
+    appendMetric(text, "run_timestamp_seconds", "gauge", "Start time of the run.");
+    text.append(sample("run_timestamp_seconds", labels, startInstant.getEpochSecond()));
+
+    appendMetric(text, "phase_seconds", "gauge", "Time spent in the phase (summed over threads).");
+    snapshot(phases)
+        .forEach(
+            (phase, nanos) ->
+                text.append(
+                    sample(
+                        "phase_seconds",
+                        String.format("%s,phase=\"%s\"", labels, phase),
+                        seconds(nanos))));
+
+    snapshot(counters)
+        .forEach(
+            (counter, value) -> {
+              appendMetric(text, counter + "_total", "counter", "Number of " + counter + ".");
+              text.append(sample(counter + "_total", labels, value));
+            });
+
+    appendMetric(text, "peak_processes", "gauge", "Peak number of concurrent Git processes.");
+    text.append(sample("peak_processes", labels, peakProcesses.get()));
+
+    appendMetric(text, "clone_duration_seconds", "histogram", "Latency of the clones.");
+    long cumulative = 0;
+    for (int i = 0; i <= latencyBuckets.length; i++) {
+      cumulative += latencyCounts.get(i);
+      text.append(
+          sample(
+              "clone_duration_seconds_bucket",
+              String.format("%s,le=\"%s\"", labels, getBucketLabel(i)),
+              cumulative));
+    }
+    text.append(sample("clone_duration_seconds_sum", labels, seconds(latencySum.sum())));
+    text.append(sample("clone_duration_seconds_count", labels, getLatencyCount()));
+    return text.toString();
+  }
+
+  private long getDurationNanos() {
+    return (endTime < 0 ? System.nanoTime() : endTime) - startTime;
+  }
+
+  private long getLatencyCount() {
+    long count = 0;
+    for (int i = 0; i < latencyCounts.length(); i++) {
+      count += latencyCounts.get(i);
+    }
+    return count;
+  }
+
+  private static String getBucketLabel(int bucket) {
+    return bucket < latencyBuckets.length ? String.valueOf(latencyBuckets[bucket]) : "+Inf";
+  }
+
+  private static Map<String, Long> snapshot(Map<String, LongAdder> values) {
+    var sorted = new TreeMap<String, Long>();
+    values.forEach((key, value) -> sorted.put(key, value.sum()));
+    return sorted;
+  }
+
+  private static String seconds(long nanos) {
+    return String.format(Locale.ROOT, "%.6f", nanos / (double) TimeUnit.SECONDS.toNanos(1));
+  }
+
+  private static void appendJsonEntries(
+      StringBuilder json, Map<String, Long> entries, LongFunction<String> f) {
+    String separator = "";
+    for (var entry : entries.entrySet()) {
+      json.append(separator)
+          .append(String.format("\"%s\": %s", entry.getKey(), f.apply(entry.getValue())));
+      separator = ", ";
+    }
+  }
+
+  private static void appendMetric(StringBuilder text, String name, String type, String help) {
+    text.append(String.format("# HELP %s%s %s\n", prefix, name, help))
+        .append(String.format("# TYPE %s%s %s\n", prefix, name, type));
+  }
+
+  private static String sample(String name, String labels, Object value) {
+    return String.format("%s%s{%s} %s\n", prefix, name, labels, value);
+  }
+
+  /** Measures one execution of a phase, see {@link RunMetrics#time(String)}. */
+  public static final class Timer {
+    private final LongAdder phase;
+    private final long start = System.nanoTime();
+
+    private Timer(LongAdder phase) {
+      this.phase = phase;
+    }
+
+    /** Adds the time elapsed since the start to the phase. */
+    public void stop() {
+      phase.add(System.nanoTime() - start);
+    }
+  }
+}
@@ -0,0 +1,366 @@
+package hu.zza.util.gitform;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * A persistent index of the last scan of {@code gitRoot} (by default {@code
+ * ~/.git-form/scan-index}). It stores the modification time of every visited directory, the known
+ * repository roots and their origin URLs with the {@link GitConfig.FileStamp stamps} of their Git
+ * config and of the files included by it.
+ *
+ * <p>The modification time of a directory changes when an entry is created, deleted or renamed in
+ * it, so an unchanged directory doesn't have to be listed again: {@link RepositoryWalker} reuses
+ * its subdirectories from the previous scan, and {@link ProjectMapper} reuses the origin URL of
+ * an unchanged repository.
+ *
+ * <p>An instance holds the previous scan (read-only) and collects the current one, which is
+ * written out by {@link ScanIndex#save()}. The previous scan is dropped if its fingerprint (the
+ * walker settings) differs from the current one.
+ *
+ * <p>The index file has a header ({@code scan-index: <version>} and the fingerprint) and one
+ * tab-separated line per directory. Tabs, line breaks and backslashes of the paths and the URLs
+ * are escaped, so every field stays on its own.
+ */
+public class ScanIndex {
+  private static final String versionLine = "scan-index: 2";
+  private static final String fingerprintKey = "fingerprint: ";
+  private static final String directoryType = "D";
+  private static final String repositoryType = "R";
+  private final Path indexFile;
+  private final String fingerprint;
+  private final Map<Path, Entry> previous = new HashMap<>();
+  private final Map<Path, List<Path>> previousChildren = new HashMap<>();
+  private final Map<Path, Entry> current = new ConcurrentHashMap<>();
+
+  /** Creates an empty, in-memory index: nothing is reused and {@link #save()} does nothing. */
+  public ScanIndex() {
+    this(null, "");
+  }
+
+  public ScanIndex(Path indexFile, String fingerprint) {
+    this.indexFile = indexFile;
+    this.fingerprint = fingerprint;
+  }
+
+  /**
+   * Loads the previous scan from {@code indexFile}. If the file doesn't exist, or it was made with
+   * a different {@code fingerprint}, the result is an empty index (a cold scan).
+   *
+   * @param indexFile the {@link Path} of the index file
+   * @param fingerprint the fingerprint of the current walker settings
+   * @return the loaded {@link ScanIndex}
+   * @throws IOException if the index file exists but cannot be read or parsed
+   */
+  public static ScanIndex load(Path indexFile, String fingerprint) throws IOException {
+    var index = new ScanIndex(indexFile, fingerprint);
+
+    if (Files.exists(indexFile)) {
+      try (Stream<String> lines = Files.lines(indexFile)) {
+        index.read(lines.iterator());
+      } catch (RuntimeException e) {
+        index.previous.clear();
+        throw new IOException("Malformed scan index: " + indexFile, e);
+      }
+      index.indexPreviousChildren();
+    }
+    return index;
+  }
+
+  /**
+   * Returns the index of the next scan without reading the index file: its previous scan is the
+   * current scan of this one, as if it was saved and loaded again (used by a long-running
+   * process, e.g. the daemon, after a save).
+   *
+   * @return a new {@link ScanIndex} with the same file and fingerprint
+   */
+  public ScanIndex next() {
+    var index = new ScanIndex(indexFile, fingerprint);
+    index.previous.putAll(current);
+    index.indexPreviousChildren();
+    return index;
+  }
+
+  /** @return the fingerprint of the walker settings of the scan */
+  public String getFingerprint() {
+    return fingerprint;
+  }
+
+  private void indexPreviousChildren() {
+    previous.keySet().stream()
+        .filter(path -> !path.toString().isEmpty())
+        .forEach(
+            path ->
+                previousChildren.computeIfAbsent(parentOf(path), k -> new ArrayList<>()).add(path));
+  }
+
+  private static Path parentOf(Path relativePath) {
+    Path parent = relativePath.getParent();
+    return parent == null ? Path.of("") : parent;
+  }
+
+  private void read(Iterator<String> lines) {
+    if (!lines.hasNext() || !lines.next().equals(versionLine)) {
+      return;
+    }
+    if (!lines.hasNext() || !lines.next().equals(fingerprintKey + fingerprint)) {
+      return;
+    }
+    while (lines.hasNext()) {
+      String[] fields = lines.next().split("\t", -1);
+      Path path = Path.of(unescape(fields[2]));
+      long modified = Long.parseLong(fields[1]);
+
+      if (directoryType.equals(fields[0])) {
+        previous.put(path, new Entry(false, modified, List.of(), null));
+      } else if (repositoryType.equals(fields[0])) {
+        var configFiles = new ArrayList<GitConfig.FileStamp>();
+        for (int i = 4; i + 2 < fields.length; i += 3) {
+          configFiles.add(
+              GitConfig.FileStamp.of(
+                  Path.of(unescape(fields[i])),
+                  Long.parseLong(fields[i + 1]),
+                  Long.parseLong(fields[i + 2])));
+        }
+        previous.put(
+            path,
+            new Entry(
+                true, modified, configFiles, fields[3].isEmpty() ? null : unescape(fields[3])));
+      } else {
+        throw new IllegalArgumentException("Unknown entry type: " + fields[0]);
+      }
+    }
+  }
+
+  /**
+   * @param text a path or a URL
+   * @return {@code text} without tabs and line breaks (they are escaped with a backslash)
+   */
+  private static String escape(String text) {
+    var escaped = new StringBuilder(text.length());
+    for (int i = 0; i < text.length(); i++) {
+      char c = text.charAt(i);
+
+      if (c == '\\') {
+        escaped.append("\\\\");
+      } else if (c == '\t') {
+        escaped.append("\\t");
+      } else if (c == '\n') {
+        escaped.append("\\n");
+      } else if (c == '\r') {
+        escaped.append("\\r");
+      } else {
+        escaped.append(c);
+      }
+    }
+    return escaped.toString();
+  }
+
+  /**
+   * @param field an escaped field of the index file
+   * @return the original text, see {@link #escape(String)}
+   * @throws IllegalArgumentException if {@code field} has an invalid escape sequence
+   */
+  private static String unescape(String field) {
+    if (field.indexOf('\\') < 0) {
+      return field;
+    }
+    var text = new StringBuilder(field.length());
+    for (int i = 0; i < field.length(); i++) {
+      char c = field.charAt(i);
+
+      if (c != '\\') {
+        text.append(c);
+        continue;
+      }
+      char next = ++i < field.length() ? field.charAt(i) : 0;
+      if (next == '\\') {
+        text.append('\\');
+      } else if (next == 't') {
+        text.append('\t');
+      } else if (next == 'n') {
+        text.append('\n');
+      } else if (next == 'r') {
+        text.append('\r');
+      } else {
+        throw new IllegalArgumentException("Invalid escape sequence in: " + field);
+      }
+    }
+    return text.toString();
+  }
+
+  /**
+   * @param relativePath a directory relative to {@code gitRoot}
+   * @return the {@link Entry} of the previous scan or null
+   */
+  public Entry getPrevious(Path relativePath) {
+    return previous.get(relativePath);
+  }
+
+  /**
+   * @param relativePath a directory relative to {@code gitRoot}
+   * @return the subdirectories of {@code relativePath} visited by the previous scan
+   */
+  public List<Path> getPreviousChildren(Path relativePath) {
+    return previousChildren.getOrDefault(relativePath, List.of());
+  }
+
+  /**
+   * @return the entries of the current scan by their path relative to {@code gitRoot} (a live,
+   *     read-only view)
+   */
+  public Map<Path, Entry> getCurrent() {
+    return Collections.unmodifiableMap(current);
+  }
+
+  /**
+   * Records a visited, non-repository directory.
+   *
+   * @param relativePath a directory relative to {@code gitRoot}
+   * @param modified its modification time in nanoseconds
+   */
+  public void putDirectory(Path relativePath, long modified) {
+    current.put(relativePath, new Entry(false, modified, List.of(), null));
+  }
+
+  /**
+   * Records a repository root. The origin URL of the previous scan is kept until {@link
+   * #putOriginUrl(Path, List, String)} overrides it.
+   *
+   * @param relativePath a repository root relative to {@code gitRoot}
+   * @param modified its modification time in nanoseconds
+   */
+  public void putRepository(Path relativePath, long modified) {
+    Entry old = previous.get(relativePath);
+    current.put(
+        relativePath,
+        old != null && old.repository
+            ? new Entry(true, modified, old.configFiles, old.originUrl)
+            : new Entry(true, modified, List.of(), null));
+  }
+
+  /**
+   * @param relativePath a repository root relative to {@code gitRoot}
+   * @param configFile the current {@link GitConfig.FileStamp} of its Git config
+   * @return the origin URL of the previous scan if the config and every file included by it
+   *     haven't changed since, or null
+   */
+  public String getOriginUrl(Path relativePath, GitConfig.FileStamp configFile) {
+    Entry entry = previous.get(relativePath);
+
+    if (entry == null || !entry.repository || entry.configFiles.isEmpty()) {
+      return null;
+    }
+    List<GitConfig.FileStamp> files = entry.configFiles;
+    return files.get(0).equals(configFile)
+            && files.subList(1, files.size()).stream().allMatch(GitConfig.FileStamp::isCurrent)
+        ? entry.originUrl
+        : null;
+  }
+
+  /**
+   * Records the origin URL of a repository root.
+   *
+   * @param relativePath a repository root relative to {@code gitRoot}
+   * @param configFiles the stamps of its Git config and of the files included by it (see {@link
+   *     GitConfig#getFiles()}), the config comes first
+   * @param originUrl the origin URL, or null if it has none
+   */
+  public void putOriginUrl(
+      Path relativePath, List<GitConfig.FileStamp> configFiles, String originUrl) {
+    current.compute(
+        relativePath,
+        (k, old) ->
+            new Entry(true, old == null ? 0 : old.modified, List.copyOf(configFiles), originUrl));
+  }
+
+  /**
+   * Writes the current scan to the index file atomically. An in-memory index is not saved.
+   *
+   * @throws IOException if the index file cannot be written
+   */
+  public void save() throws IOException {
+    if (indexFile == null) {
+      return;
+    }
+    Files.createDirectories(indexFile.getParent());
+    Path tmpFile = Files.createTempFile(indexFile.getParent(), "scan-index-", ".tmp");
+
+    try (BufferedWriter writer = Files.newBufferedWriter(tmpFile)) {
+      writer.write(versionLine);
+      writer.newLine();
+      writer.write(fingerprintKey + fingerprint);
+      writer.newLine();
+
+      for (var e : current.entrySet()) {
+        writer.write(e.getValue().toLine(e.getKey()));
+        writer.newLine();
+      }
+    }
+    Files.move(
+        tmpFile, indexFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+  }
+
+  /** The scan result of one directory. */
+  public static final class Entry {
+    private final boolean repository;
+    private final long modified;
+    private final List<GitConfig.FileStamp> configFiles;
+    private final String originUrl;
+
+    private Entry(
+        boolean repository,
+        long modified,
+        List<GitConfig.FileStamp> configFiles,
+        String originUrl) {
+      this.repository = repository;
+      this.modified = modified;
+      this.configFiles = configFiles;
+      this.originUrl = originUrl;
+    }
+
+    public boolean isRepository() {
+      return repository;
+    }
+
+    public long getModified() {
+      return modified;
+    }
+
+    private String toLine(Path relativePath) {
+      String path = escape(relativePath.toString());
+
+      if (!repository) {
+        return String.join("\t", directoryType, Long.toString(modified), path);
+      }
+      var line =
+          new StringBuilder(
+              String.join(
+                  "\t",
+                  repositoryType,
+                  Long.toString(modified),
+                  path,
+                  originUrl == null ? "" : escape(originUrl)));
+      for (GitConfig.FileStamp file : configFiles) {
+        line.append('\t')
+            .append(escape(file.getPath().toString()))
+            .append('\t')
+            .append(file.getModified())
+            .append('\t')
+            .append(file.getSize());
+      }
+      return line.toString();
+    }
+  }
+}
@@ -6,11 +6,20 @@ import java.nio.file.Path;
 import java.util.List;
 
 public class Settings {
+  private static final int defaultParallelism =
+      Math.max(2, Runtime.getRuntime().availableProcessors());
   private final Path homePath;
   private final Path settingsPath;
   private final Path settingsFilePath;
   private Path gitRoot;
   private Path gitFormRoot;
+  private int parallelism = defaultParallelism;
+  private int maxDepth = Integer.MAX_VALUE;
+  private boolean manifestFormat = false;
+  private String remoteName = "origin";
+  private CloneProfile cloneProfile = CloneProfile.full;
+  private int mirrorCacheSize = 0;
+  private String gitBackend = ProcessGitBackend.backendName;
 
   public Settings() {
     homePath = Path.of(System.getProperty("user.home"));
@@ -42,6 +51,38 @@ public class Settings {
     }
   }
 
+  public Path getSettingsPath() {
+    return settingsPath;
+  }
+
+  /** @return the {@link Path} of {@code settings.yaml} */
+  public Path getSettingsFile() {
+    return settingsFilePath;
+  }
+
+  /**
+   * @return the {@link Path} of the Unix domain socket of the daemon (see {@code GitFormDaemon} of
+   *     the {@code daemon} source set), in a folder of the settings folder
+   */
+  public Path getDaemonSocketFile() {
+    return settingsPath.resolve("daemon").resolve("socket");
+  }
+
+  /** @return the {@link Path} of the {@link ScanIndex} file in the settings folder */
+  public Path getScanIndexFile() {
+    return settingsPath.resolve("scan-index");
+  }
+
+  /** @return the {@link Path} of the {@link StatusCache} file in the settings folder */
+  public Path getStatusCacheFile() {
+    return settingsPath.resolve("status-cache");
+  }
+
+  /** @return the {@link Path} of the folder where {@link RunMetrics} are written after each run */
+  public Path getMetricsPath() {
+    return settingsPath.resolve("metrics");
+  }
+
   public Path getGitRoot() {
     return gitRoot;
   }
@@ -50,13 +91,134 @@ public class Settings {
     return gitFormRoot;
   }
 
+  /**
+   * The maximum number of Git processes (clones) running at the same time. It can be set with the
+   * {@code parallelism} key of {@code settings.yaml}, the default is the number of available
+   * processors (at least 2).
+   *
+   * @return the parallelism limit of {@link GitScheduler}
+   */
+  public int getParallelism() {
+    return parallelism;
+  }
+
+  public void setParallelism(int parallelism) {
+    this.parallelism = parallelism;
+  }
+
+  /**
+   * The maximum depth of the repository discovery relative to {@code gitRoot} ({@code gitRoot}
+   * itself is depth 0). It can be set with the {@code max-depth} key of {@code settings.yaml}, by
+   * default it's unlimited.
+   *
+   * @return the depth limit of {@link RepositoryWalker}
+   */
+  public int getMaxDepth() {
+    return maxDepth;
+  }
+
+  public void setMaxDepth(int maxDepth) {
+    this.maxDepth = maxDepth;
+  }
+
+  /**
+   * Whether {@link ProjectMapper#save()} writes the consolidated {@link GitFormManifest} instead
+   * of one YAML file per project. It can be set with the {@code format} key of {@code
+   * settings.yaml} ({@code manifest} or {@code files}), by default it's {@code files}.
+   *
+   * @return true if the projects are saved into the manifest
+   */
+  public boolean isManifestFormat() {
+    return manifestFormat;
+  }
+
+  public void setManifestFormat(boolean manifestFormat) {
+    this.manifestFormat = manifestFormat;
+  }
+
+  /**
+   * The name of the remote saved as the origin of the projects. It can be set with the {@code
+   * remote} key of {@code settings.yaml}, by default it's {@code origin}.
+   *
+   * @return the name of the remote
+   */
+  public String getRemoteName() {
+    return remoteName;
+  }
+
+  public void setRemoteName(String remoteName) {
+    this.remoteName = remoteName;
+  }
+
+  /**
+   * The {@link CloneProfile} of the projects without their own {@code clone} key. It can be set
+   * with the {@code clone} key of {@code settings.yaml}, by default it's {@code full}.
+   *
+   * @return the default clone profile
+   */
+  public CloneProfile getCloneProfile() {
+    return cloneProfile;
+  }
+
+  public void setCloneProfile(CloneProfile cloneProfile) {
+    this.cloneProfile = cloneProfile;
+  }
+
+  /** @return the {@link Path} of the {@link MirrorCache} folder in the settings folder */
+  public Path getMirrorCachePath() {
+    return settingsPath.resolve("mirrors");
+  }
+
+  /**
+   * The size limit of the {@link MirrorCache} in megabytes. It can be set with the {@code
+   * mirror-cache-size} key of {@code settings.yaml}. By default it's 0: the cache is disabled.
+   * Only the projects with the {@code full} {@link CloneProfile} are cloned through the cache.
+   *
+   * @return the size limit in megabytes, or 0 if the cache is disabled
+   */
+  public int getMirrorCacheSize() {
+    return mirrorCacheSize;
+  }
+
+  public void setMirrorCacheSize(int mirrorCacheSize) {
+    this.mirrorCacheSize = mirrorCacheSize;
+  }
+
+  /**
+   * The specification of the {@link GitBackend}, e.g. {@code jgit} or {@code process,
+   * status=jgit}, see {@link GitBackend#create(String, GitConfigCache)}. It can be set with the
+   * {@code backend} key of {@code settings.yaml}, by default it's {@code process}.
+   *
+   * @return the specification of the backend
+   */
+  public String getGitBackend() {
+    return gitBackend;
+  }
+
+  public void setGitBackend(String gitBackend) {
+    this.gitBackend = gitBackend;
+  }
+
+  /** @return the {@link Path} of the {@link GitFormManifest} file in {@code gitFormRoot} */
+  public Path getManifestFile() {
+    return gitFormRoot.resolve(GitFormManifest.fileName);
+  }
+
   private void initializeSettings() {
     try {
       var map = YamlReader.parse(settingsFilePath);
       gitRoot = Path.of(map.get("git"));
       gitFormRoot = Path.of(map.get("git-form"));
+      parallelism = parsePositiveInt(map.get("parallelism"), defaultParallelism);
+      maxDepth = parsePositiveInt(map.get("max-depth"), Integer.MAX_VALUE);
+      manifestFormat = "manifest".equals(map.get("format"));
+      remoteName = map.getOrDefault("remote", remoteName).strip();
+      cloneProfile = parseCloneProfile(map.get("clone"));
+      mirrorCacheSize = parsePositiveInt(map.get("mirror-cache-size"), 0);
+      gitBackend = parseGitBackend(map.get("backend"));
     } catch (IOException e) {
-      System.err.printf("Cannot load and initialize settings: %s", settingsFilePath);
+      System.err.printf(
+          "Cannot load and initialize settings: %s (%s)%n", settingsFilePath, e.getMessage());
     }
   }
 
@@ -68,4 +230,57 @@ public class Settings {
       System.err.printf("Cannot initialize settings folder and files: %s", settingsPath);
     }
   }
+
+  /**
+   * @param value the raw value from {@code settings.yaml}, it can be null
+   * @return the parsed {@link CloneProfile}, or {@link CloneProfile#full} if it's missing or
+   *     invalid
+   */
+  private CloneProfile parseCloneProfile(String value) {
+    if (value == null || value.isBlank()) {
+      return CloneProfile.full;
+    }
+    try {
+      return CloneProfile.parse(value);
+    } catch (IllegalArgumentException e) {
+      System.err.printf("Invalid clone profile in settings: %s (%s)%n", value, e.getMessage());
+      return CloneProfile.full;
+    }
+  }
+
+  /**
+   * @param value the raw value from {@code settings.yaml}, it can be null
+   * @return the validated specification of the {@link GitBackend}, or {@code process} if it's
+   *     missing or invalid (e.g. the backend is not on the class path)
+   */
+  private String parseGitBackend(String value) {
+    if (value == null || value.isBlank() || ProcessGitBackend.backendName.equals(value.strip())) {
+      return ProcessGitBackend.backendName;
+    }
+    try {
+      GitBackend.create(value, new GitConfigCache());
+      return value.strip();
+    } catch (IllegalArgumentException e) {
+      System.err.printf("Invalid git backend in settings: %s (%s)%n", value, e.getMessage());
+      return ProcessGitBackend.backendName;
+    }
+  }
+
+  /**
+   * @param value the raw value from {@code settings.yaml}, it can be null
+   * @param defaultValue the fallback if {@code value} is missing, malformed or not positive
+   * @return the parsed value or {@code defaultValue}
+   */
+  private int parsePositiveInt(String value, int defaultValue) {
+    if (value == null) {
+      return defaultValue;
+    }
+    try {
+      int parsed = Integer.parseInt(value.strip());
+      return parsed > 0 ? parsed : defaultValue;
+    } catch (NumberFormatException e) {
+      System.err.printf("Invalid number in settings: %s%n", value);
+      return defaultValue;
+    }
+  }
 }
@@ -0,0 +1,151 @@
+package hu.zza.util.gitform;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * A persistent cache of {@link RepositoryStatus} results (by default {@code
+ * ~/.git-form/status-cache}). A result is valid while the key of the repository is the same: the
+ * modification times of {@code HEAD}, the index, {@code packed-refs}, the ref directories and the
+ * project root. A commit, checkout, fetch, stage or a new file in the project root changes the
+ * key.
+ *
+ * <p>An edit of a tracked file (without staging) doesn't change any of them, so {@code git-form
+ * status --full} ignores the cache.
+ *
+ * <p>Like {@link ScanIndex}, an instance holds the previous results (read-only) and collects the
+ * current ones, which are written out by {@link StatusCache#save()}.
+ */
+public class StatusCache {
+  private final Path cacheFile;
+  private final Map<Path, String[]> previous = new HashMap<>();
+  private final Map<Path, String> current = new ConcurrentHashMap<>();
+
+  public StatusCache(Path cacheFile) {
+    this.cacheFile = cacheFile;
+  }
+
+  /**
+   * Loads the previous results from {@code cacheFile}. If it doesn't exist, the cache is empty.
+   *
+   * @param cacheFile the {@link Path} of the cache file
+   * @return the loaded {@link StatusCache}
+   * @throws IOException if the file exists but cannot be read or parsed
+   */
+  public static StatusCache load(Path cacheFile) throws IOException {
+    var cache = new StatusCache(cacheFile);
+
+    if (Files.exists(cacheFile)) {
+      try (Stream<String> lines = Files.lines(cacheFile)) {
+        lines
+            .filter(line -> !line.isBlank())
+            .map(line -> line.split("\t", -1))
+            .forEach(fields -> cache.previous.put(Path.of(fields[0]), fields));
+      }
+    }
+    return cache;
+  }
+
+  /**
+   * Computes the cache key of a repository from the modification times of the files Git changes
+   * when the status changes (except the edits of tracked files).
+   *
+   * @param projectRoot {@link Path} to the project root folder
+   * @return the key as a hexadecimal {@link String}
+   * @throws IOException if the Git directory cannot be found or the refs cannot be listed
+   */
+  public static String computeKey(Path projectRoot) throws IOException {
+    Path gitDirectory = GitConfig.findGitDirectory(projectRoot);
+    Path commonDirectory = GitConfig.findCommonDirectory(projectRoot);
+    long[] key = {17};
+
+    for (Path path :
+        new Path[] {
+          projectRoot,
+          gitDirectory.resolve("HEAD"),
+          gitDirectory.resolve("index"),
+          commonDirectory.resolve("packed-refs")
+        }) {
+      key[0] = 31 * key[0] + getModified(path);
+    }
+    Path refs = commonDirectory.resolve("refs");
+    if (Files.isDirectory(refs)) {
+      Files.walkFileTree(
+          refs,
+          new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attributes) {
+              key[0] = 31 * key[0] + attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS);
+              return FileVisitResult.CONTINUE;
+            }
+          });
+    }
+    return Long.toHexString(key[0]);
+  }
+
+  private static long getModified(Path path) {
+    try {
+      return Files.getLastModifiedTime(path, LinkOption.NOFOLLOW_LINKS).to(TimeUnit.NANOSECONDS);
+    } catch (IOException e) {
+      return -1;
+    }
+  }
+
+  /**
+   * @param relativePath the project root relative to {@code gitRoot}
+   * @param key the current key of the repository by {@link StatusCache#computeKey(Path)}
+   * @return the cached {@link RepositoryStatus}, or null if there is none with the same key
+   */
+  public RepositoryStatus get(Path relativePath, String key) {
+    String[] fields = previous.get(relativePath);
+
+    if (fields == null || fields.length != 10 || !fields[1].equals(key)) {
+      return null;
+    }
+    try {
+      return RepositoryStatus.fromFields(fields, 2);
+    } catch (RuntimeException e) {
+      return null;
+    }
+  }
+
+  /**
+   * @param relativePath the project root relative to {@code gitRoot}
+   * @param key the key of the repository at the time of the status check
+   * @param status the {@link RepositoryStatus} to cache
+   */
+  public void put(Path relativePath, String key, RepositoryStatus status) {
+    current.put(relativePath, String.join("\t", relativePath.toString(), key, status.toFields()));
+  }
+
+  /**
+   * Writes the current results to the cache file atomically.
+   *
+   * @throws IOException if the cache file cannot be written
+   */
+  public void save() throws IOException {
+    Files.createDirectories(cacheFile.getParent());
+    Path tmpFile = Files.createTempFile(cacheFile.getParent(), "status-cache-", ".tmp");
+
+    try (BufferedWriter writer = Files.newBufferedWriter(tmpFile)) {
+      for (String line : current.values()) {
+        writer.write(line);
+        writer.newLine();
+      }
+    }
+    Files.move(
+        tmpFile, cacheFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+  }
+}
@@ -0,0 +1,257 @@
+package hu.zza.util.gitform;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * An instance of this class checks the status of every project of the GitForm folder (the YAML
+ * files and the {@link GitFormManifest}) in parallel on a {@link GitScheduler}. It's the
+ * successor of the {@code git-status} script.
+ *
+ * <p>The {@link RepositoryStatus} of a project comes from the {@link GitBackend} (by default,
+ * it's parsed from {@code git status --porcelain=v2 --branch}). The results are cached by {@link
+ * StatusCache}, so an unchanged repository doesn't need a Git process at all.
+ *
+ * <p>An instance can check the status again and again (e.g. in the daemon): the {@link
+ * GitBackend} and the parsed project files are kept, an unchanged file is not parsed again.
+ */
+public class StatusChecker {
+  private static final Predicate<Path> isYaml = p -> p.toString().endsWith(".yaml");
+  private final Settings settings;
+  private final ResultReport resultReport;
+  private final Path gitRoot;
+  private final Path gitFormRoot;
+  private final GitConfigCache gitConfigCache = new GitConfigCache();
+  private final Map<Path, ParsedFile> parsedFiles = new HashMap<>();
+  private RunMetrics metrics = new RunMetrics("status");
+  private GitBackend backend;
+
+  public StatusChecker(Settings settings) {
+    this(settings, new ResultReport());
+  }
+
+  public StatusChecker(Settings settings, ResultReport resultReport) {
+    this.settings = settings;
+    this.resultReport = resultReport;
+    gitRoot = settings.getGitRoot();
+    gitFormRoot = settings.getGitFormRoot();
+  }
+
+  /** @return the {@link RunMetrics} of the last (or current) status check */
+  public RunMetrics getMetrics() {
+    return metrics;
+  }
+
+  /**
+   * Checks the status of every project and puts a summary line per project into the {@link
+   * ResultReport}. The projects which are not cloned yet are listed separately.
+   *
+   * @param fetch if true, every project is fetched first (from the remote of its upstream)
+   * @param refresh if true, the {@link StatusCache} is ignored (the results are still saved)
+   */
+  public void status(boolean fetch, boolean refresh) {
+    resultReport.clear();
+    resultReport.setMainObjective("Check status of GitHub projects");
+    metrics = new RunMetrics("status");
+
+    try (var scheduler = new GitScheduler(settings.getParallelism())) {
+      if (backend == null) {
+        backend = GitBackend.create(settings.getGitBackend(), gitConfigCache);
+      }
+      StatusCache cache = loadStatusCache(refresh);
+      var checks = new ArrayList<CompletableFuture<Void>>();
+
+      for (GitHubProject project : readProjects()) {
+        Path rootPath = gitRoot.resolve(project.getProjectRoot());
+
+        if (Files.isDirectory(rootPath)) {
+          checks.add(
+              scheduler
+                  .submit(() -> checkStatus(backend, project.getProjectRoot(), fetch, cache))
+                  .handle((status, e) -> appendToResultReport(project, status, e)));
+        } else {
+          resultReport.appendAdditionalInfo("Not cloned:", project.getProjectRoot().toString());
+        }
+      }
+      CompletableFuture.allOf(checks.toArray(CompletableFuture[]::new)).join();
+      cache.save();
+      resultReport.setSuccessful(true);
+    } catch (IOException | IllegalArgumentException e) {
+      resultReport.appendAdditionalInfo("Cannot check status:", e.toString());
+    } finally {
+      writeMetrics();
+      resultReport.print();
+    }
+  }
+
+  private void writeMetrics() {
+    metrics.finish();
+    try {
+      metrics.write(settings.getMetricsPath());
+    } catch (IOException e) {
+      resultReport.appendAdditionalInfo("Cannot write metrics:", e.toString());
+    }
+  }
+
+  /**
+   * @param refresh if true, the previous results are not loaded
+   * @return the {@link StatusCache} of the previous check, or an empty one (with the same file)
+   */
+  private StatusCache loadStatusCache(boolean refresh) {
+    Path cacheFile = settings.getStatusCacheFile();
+
+    if (!refresh) {
+      try {
+        return StatusCache.load(cacheFile);
+      } catch (IOException | RuntimeException e) {
+        resultReport.appendAdditionalInfo("Cannot load status cache:", e.toString());
+      }
+    }
+    return new StatusCache(cacheFile);
+  }
+
+  /**
+   * Reads the projects of the manifest and the YAML files of {@code gitFormRoot}. The unparsable
+   * files are put into the {@link ResultReport}. A file which hasn't changed since the previous
+   * check of this instance is not parsed again.
+   *
+   * @return the {@link Set} of projects without duplicates
+   * @throws IOException if {@code gitFormRoot} cannot be listed
+   */
+  private Set<GitHubProject> readProjects() throws IOException {
+    var projects = new LinkedHashSet<GitHubProject>();
+    var projectFiles = new ArrayList<Path>();
+    Path manifestFile = settings.getManifestFile();
+
+    if (Files.exists(manifestFile)) {
+      projectFiles.add(manifestFile);
+    }
+    try (Stream<Path> files = Files.list(gitFormRoot)) {
+      projectFiles.addAll(files.filter(isYaml).sorted().collect(Collectors.toList()));
+    }
+    var parsed = new HashMap<Path, ParsedFile>();
+    var timer = metrics.time("parse");
+    try {
+      for (Path projectFile : projectFiles) {
+        try {
+          ParsedFile parsedFile = parsedFiles.get(projectFile);
+          if (parsedFile == null || !parsedFile.stamp.isCurrent()) {
+            var stamp = GitConfig.FileStamp.of(projectFile);
+            parsedFile =
+                new ParsedFile(
+                    stamp,
+                    projectFile.equals(manifestFile)
+                        ? GitFormManifest.read(projectFile)
+                        : GitHubProject.parseAll(projectFile));
+          }
+          parsed.put(projectFile, parsedFile);
+          projects.addAll(parsedFile.projects);
+        } catch (IOException | RuntimeException e) {
+          resultReport.appendAdditionalInfo(
+              "Cannot parse project file:", String.format("%s (%s)", projectFile, e.getMessage()));
+        }
+      }
+    } finally {
+      timer.stop();
+    }
+    parsedFiles.clear();
+    parsedFiles.putAll(parsed);
+    return projects;
+  }
+
+  /**
+   * Returns the status of a project. If {@code fetch} is false and the repository hasn't changed
+   * since the cached check, it's the cached status. Otherwise, it asks the {@link GitBackend}. The
+   * result is cached only if the key was the same before and after the check (it's not cached
+   * when Git has just refreshed the index, but the next check will be).
+   *
+   * @param backend the {@link GitBackend} of the fetch and the status check
+   * @param relativeRoot the project root relative to {@code gitRoot}
+   * @param fetch if true, the project is fetched first
+   * @param cache the {@link StatusCache}
+   * @return the {@link RepositoryStatus} of the project
+   * @throws IOException if the fetch or the status check fails
+   * @throws InterruptedException if the worker is interrupted while waiting
+   */
+  private RepositoryStatus checkStatus(
+      GitBackend backend, Path relativeRoot, boolean fetch, StatusCache cache)
+      throws IOException, InterruptedException {
+    Path rootPath = gitRoot.resolve(relativeRoot);
+
+    if (fetch) {
+      var timer = metrics.time("fetch");
+      try {
+        backend.fetch(rootPath);
+      } finally {
+        timer.stop();
+      }
+    }
+    String key = StatusCache.computeKey(rootPath);
+    RepositoryStatus status = cache.get(relativeRoot, key);
+
+    if (status != null) {
+      metrics.increment("cache_hits");
+      cache.put(relativeRoot, key, status);
+      return status;
+    }
+    metrics.increment("cache_misses");
+    metrics.processStarted();
+    var timer = metrics.time("status");
+    try {
+      status = backend.status(rootPath);
+    } finally {
+      timer.stop();
+      metrics.processFinished();
+    }
+    if (key.equals(StatusCache.computeKey(rootPath))) {
+      cache.put(relativeRoot, key, status);
+    }
+    return status;
+  }
+
+  /**
+   * Completion callback of a status check.
+   *
+   * @param project the checked {@link GitHubProject}
+   * @param status the {@link RepositoryStatus}, or null if it has failed with exception
+   * @param exception the cause of the failure, or null on normal completion
+   * @return always null, it's just for {@link CompletableFuture#handle}
+   */
+  private Void appendToResultReport(
+      GitHubProject project, RepositoryStatus status, Throwable exception) {
+    String pathString = project.getProjectRoot().toString();
+
+    if (exception == null) {
+      metrics.increment(status.isSynchronized() ? "projects_synchronized" : "projects_changed");
+      resultReport.appendResult(String.format("%s %s", pathString, status));
+    } else {
+      Throwable cause = exception.getCause() == null ? exception : exception.getCause();
+      metrics.increment("checks_failed");
+      resultReport.appendAdditionalInfo(
+          "Cannot check project:", String.format("%s (%s)", pathString, cause.getMessage()));
+    }
+    return null;
+  }
+
+  /** The projects of a project file, and the stamp of the file taken before it was read. */
+  private static final class ParsedFile {
+    private final GitConfig.FileStamp stamp;
+    private final List<GitHubProject> projects;
+
+    private ParsedFile(GitConfig.FileStamp stamp, List<GitHubProject> projects) {
+      this.stamp = stamp;
+      this.projects = projects;
+    }
+  }
+}
@@ -0,0 +1,18 @@
+package hu.zza.util.gitform;
+
+import java.io.IOException;
+
+/** Signals a malformed YAML input. The message contains the line number of the problem. */
+public class YamlException extends IOException {
+  private static final long serialVersionUID = 1L;
+  private final int lineNumber;
+
+  public YamlException(String message, int lineNumber) {
+    super(String.format("%s at line %d", message, lineNumber));
+    this.lineNumber = lineNumber;
+  }
+
+  public int getLineNumber() {
+    return lineNumber;
+  }
+}
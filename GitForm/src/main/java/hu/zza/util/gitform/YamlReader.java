@@ -1,24 +1,82 @@
 package hu.zza.util.gitform;
 
 import java.io.IOException;
-import java.nio.file.Files;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+/**
+ * Reads the simple YAML subset of GitForm: flat dictionaries of {@code key: value} lines in one or
+ * more documents (separated by {@code ---}). Duplicate keys are allowed, the last value wins.
+ * Malformed lines are reported with {@link YamlException} (with the line number).
+ */
 public interface YamlReader {
+  /** Files above this size are memory-mapped instead of read into the heap. */
+  int mappingThreshold = 1 << 16;
+
   /**
-   * Parses a YAML file as a simple dictionary of key-value pairs
+   * Parses a YAML file as a simple dictionary of key-value pairs. Only the first document is
+   * returned.
    *
    * @param yamlFile the {@link Path path} of the YAML file to parse
    * @return a {@link Map<String,String> map}
-   * @throws IOException if {@code Files.lines(yamlFile)} throws
+   * @throws IOException if the file cannot be read, or {@link YamlException} if it's malformed
    */
   static Map<String, String> parse(Path yamlFile) throws IOException {
-    try (Stream<String> lines = Files.lines(yamlFile)) {
-      return parse(lines);
+    return parse(read(yamlFile));
+  }
+
+  /**
+   * Parses every document of a YAML file.
+   *
+   * @param yamlFile the {@link Path path} of the YAML file to parse
+   * @return a {@link List} of {@link Map<String,String> maps}, one per document
+   * @throws IOException if the file cannot be read, or {@link YamlException} if it's malformed
+   */
+  static List<Map<String, String>> parseAll(Path yamlFile) throws IOException {
+    var documents = new ArrayList<Map<String, String>>();
+    parse(read(yamlFile), documents::add);
+    return documents;
+  }
+
+  /**
+   * Parses the first document of a YAML text as a simple dictionary of key-value pairs.
+   *
+   * @param text the YAML text, e.g. a decoded {@link CharBuffer}
+   * @return a {@link Map<String,String> map}, it's empty if there is no document
+   * @throws YamlException if the text is malformed
+   */
+  static Map<String, String> parse(CharSequence text) throws YamlException {
+    Map<String, String> document = new YamlScanner(text).nextDocument();
+    return document == null ? Map.of() : document;
+  }
+
+  /**
+   * Parses every document of a YAML text and passes them one by one to {@code documentConsumer},
+   * so a large multi-document stream never has to be in memory as a whole.
+   *
+   * @param text the YAML text, e.g. a decoded {@link CharBuffer}
+   * @param documentConsumer it gets the {@link Map<String,String> map} of every document in order
+   * @throws YamlException if the text is malformed
+   */
+  static void parse(CharSequence text, Consumer<Map<String, String>> documentConsumer)
+      throws YamlException {
+    var scanner = new YamlScanner(text);
+    Map<String, String> document;
+
+    while ((document = scanner.nextDocument()) != null) {
+      documentConsumer.accept(document);
     }
   }
 
@@ -27,12 +85,36 @@ public interface YamlReader {
    *
    * @param stringEntries {@link Stream<String>} of {@link String strings} in a "key: value" format
    * @return a {@link Map<String,String> map}
+   * @throws UncheckedIOException with a {@link YamlException} if an entry is malformed
    */
   static Map<String, String> parse(Stream<String> stringEntries) {
-    return stringEntries
-        .map(line -> line.split(": ", 2))
-        .filter(arr -> arr.length == 2)
-        .map(arr -> Map.entry(arr[0], arr[1]))
-        .collect(Collectors.toMap(Entry::getKey, Entry::getValue));
+    try {
+      return parse(stringEntries.collect(Collectors.joining("\n")));
+    } catch (YamlException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Reads and decodes a UTF-8 text file. Small files are read in one go, large ones are
+   * memory-mapped, so the file content is copied only once (by the decoder).
+   *
+   * @param file the {@link Path path} of the file
+   * @return the content as a {@link CharBuffer}
+   * @throws IOException if the file cannot be read
+   */
+  static CharBuffer read(Path file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      long size = channel.size();
+
+      if (size > mappingThreshold) {
+        return StandardCharsets.UTF_8.decode(channel.map(MapMode.READ_ONLY, 0, size));
+      }
+      ByteBuffer buffer = ByteBuffer.allocate((int) size);
+      while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+        // read until the buffer is full or the end of the file
+      }
+      return StandardCharsets.UTF_8.decode(buffer.flip());
+    }
   }
 }
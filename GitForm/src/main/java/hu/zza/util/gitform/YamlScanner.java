@@ -0,0 +1,105 @@
+package hu.zza.util.gitform;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A hand-written scanner for the simple YAML subset of GitForm: flat dictionaries of {@code key:
+ * value} lines, comments ({@code #}), and documents separated by {@code ---} (or closed by {@code
+ * ...}). It works on any {@link CharSequence} (e.g. a {@link java.nio.CharBuffer} of a decoded
+ * file) without splitting it into lines: only the keys and the values are copied out.
+ *
+ * <p>A key may occur more than once in a document, the last value wins.
+ */
+final class YamlScanner {
+  private final CharSequence text;
+  private int position;
+  private int lineNumber;
+
+  YamlScanner(CharSequence text) {
+    this.text = text;
+  }
+
+  /**
+   * Scans the next non-empty document.
+   *
+   * @return the key-value pairs of the document in order, or null at the end of the text
+   * @throws YamlException if a line is neither a comment, a document marker nor a {@code key:
+   *     value} pair
+   */
+  Map<String, String> nextDocument() throws YamlException {
+    Map<String, String> document = null;
+
+    while (position < text.length()) {
+      int start = position;
+      int end = start;
+      while (end < text.length() && text.charAt(end) != '\n') {
+        end++;
+      }
+      position = end + 1;
+      lineNumber++;
+
+      while (end > start && Character.isWhitespace(text.charAt(end - 1))) {
+        end--;
+      }
+      while (start < end && Character.isWhitespace(text.charAt(start))) {
+        start++;
+      }
+      if (start == end || text.charAt(start) == '#') {
+        continue;
+      }
+      if (isMarker(start, end, "---") || isMarker(start, end, "...")) {
+        if (document != null) {
+          return document;
+        }
+        continue;
+      }
+      if (document == null) {
+        document = new LinkedHashMap<>();
+      }
+      scanEntry(start, end, document);
+    }
+    return document;
+  }
+
+  private boolean isMarker(int start, int end, String marker) {
+    if (end - start != marker.length()) {
+      return false;
+    }
+    for (int i = 0; i < marker.length(); i++) {
+      if (text.charAt(start + i) != marker.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Scans one {@code key: value} line. The separator is the first {@code ": "} (or the {@code :}
+   * at the end of the line for an empty value).
+   */
+  private void scanEntry(int start, int end, Map<String, String> document) throws YamlException {
+    int colon = start;
+    while (colon < end
+        && !(text.charAt(colon) == ':'
+            && (colon + 1 == end || Character.isWhitespace(text.charAt(colon + 1))))) {
+      colon++;
+    }
+    if (colon == end) {
+      throw new YamlException("Missing ': ' separator", lineNumber);
+    }
+    int keyEnd = colon;
+    while (keyEnd > start && Character.isWhitespace(text.charAt(keyEnd - 1))) {
+      keyEnd--;
+    }
+    if (keyEnd == start) {
+      throw new YamlException("Missing key", lineNumber);
+    }
+    int valueStart = colon + 1;
+    while (valueStart < end && Character.isWhitespace(text.charAt(valueStart))) {
+      valueStart++;
+    }
+    document.put(
+        text.subSequence(start, keyEnd).toString(), text.subSequence(valueStart, end).toString());
+  }
+}
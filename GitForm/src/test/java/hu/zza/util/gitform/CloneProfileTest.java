@@ -0,0 +1,38 @@
+package hu.zza.util.gitform;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class CloneProfileTest {
+
+  @Test
+  void parseProfiles() {
+    assertTrue(CloneProfile.parse(" full ").isFull());
+    assertEquals(List.of(), CloneProfile.full.getArguments());
+    assertEquals(
+        List.of("--depth", "5", "--single-branch"),
+        CloneProfile.parse("depth=5, single-branch").getArguments());
+    assertEquals(List.of("--filter=blob:none"), CloneProfile.parse("blobless").getArguments());
+    assertEquals(List.of("--filter=tree:0"), CloneProfile.parse("treeless").getArguments());
+  }
+
+  @Test
+  void textFormRoundTrip() {
+    var profile = CloneProfile.parse("single-branch,treeless");
+
+    assertEquals("treeless, single-branch", profile.toString());
+    assertEquals(profile, CloneProfile.parse(profile.toString()));
+  }
+
+  @Test
+  void parseInvalid() {
+    assertThrows(IllegalArgumentException.class, () -> CloneProfile.parse("depth=0"));
+    assertThrows(IllegalArgumentException.class, () -> CloneProfile.parse("shallow"));
+    assertThrows(IllegalArgumentException.class, () -> CloneProfile.parse("blobless, depth=1"));
+    assertThrows(IllegalArgumentException.class, () -> CloneProfile.parse("full, single-branch"));
+  }
+}
@@ -0,0 +1,101 @@
+package hu.zza.util.gitform;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class EventLogTest {
+
+  @Test
+  void writeJsonLines(@TempDir Path tempDir) throws IOException {
+    Path file = tempDir.resolve("events.jsonl");
+
+    try (var events = EventLog.open(file)) {
+      events.emit("clone_finished", "project", "B/projectB", "exit", 0, "ms", 812L);
+      events.emit("error", "project", "a\"b", "message", "line\nnext", "exit", null);
+    }
+    List<String> lines = Files.readAllLines(file);
+
+    assertEquals(2, lines.size());
+    assertThat(lines.get(0))
+        .startsWith("{\"time\":\"")
+        .endsWith(
+            "\"event\":\"clone_finished\",\"project\":\"B/projectB\",\"exit\":0,\"ms\":812}");
+    assertThat(lines.get(1))
+        .endsWith("\"project\":\"a\\\"b\",\"message\":\"line\\nnext\",\"exit\":null}");
+  }
+
+  @Test
+  void emitConcurrently(@TempDir Path tempDir) throws IOException {
+    Path file = tempDir.resolve("events.jsonl");
+
+    try (var events = EventLog.open(file)) {
+      CompletableFuture.allOf(
+              IntStream.range(0, 8)
+                  .mapToObj(
+                      t ->
+                          CompletableFuture.runAsync(
+                              () -> {
+                                for (int i = 0; i < 1000; i++) {
+                                  events.emit("project_parsed", "thread", t, "index", i);
+                                }
+                              }))
+                  .toArray(CompletableFuture[]::new))
+          .join();
+    }
+    assertThat(Files.readAllLines(file))
+        .hasSize(8000)
+        .allMatch(line -> line.startsWith("{") && line.endsWith("}"));
+  }
+
+  @Test
+  void emitAfterClose(@TempDir Path tempDir) throws IOException {
+    Path file = tempDir.resolve("events.jsonl");
+    var events = EventLog.open(file);
+    events.emit("run_started", "command", "load");
+    events.close();
+    events.emit("run_finished", "command", "load");
+    events.close();
+
+    assertEquals(1, Files.readAllLines(file).size());
+    assertFalse(EventLog.disabled.isEnabled());
+  }
+
+  @Test
+  void reportWriteErrorAfterTheWriterStopped() throws Exception {
+    var outputClosed = new CountDownLatch(1);
+    var failing =
+        new OutputStream() {
+          @Override
+          public void write(int b) throws IOException {
+            throw new IOException("disk full");
+          }
+
+          @Override
+          public void close() {
+            outputClosed.countDown();
+          }
+        };
+    var events = new EventLog(failing);
+    events.emit("run_started", "command", "load");
+    assertThat(outputClosed.await(10, TimeUnit.SECONDS)).isTrue();
+    Thread.sleep(100);
+    events.emit("run_finished", "command", "load");
+
+    assertThat(assertThrows(IOException.class, events::close)).hasMessage("disk full");
+    assertThrows(IOException.class, events::close);
+  }
+}
@@ -0,0 +1,51 @@
+package hu.zza.util.gitform;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class GitBackendTest {
+
+  @Test
+  void createProcessBackend() {
+    var configCache = new GitConfigCache();
+
+    assertThat(GitBackend.create("process", configCache)).isInstanceOf(ProcessGitBackend.class);
+    assertThat(GitBackend.create("status=process", configCache))
+        .isInstanceOf(ProcessGitBackend.class);
+    assertEquals("process", GitBackend.create("process, clone=process", configCache).getName());
+  }
+
+  @Test
+  void rejectUnknownBackend() {
+    var configCache = new GitConfigCache();
+
+    assertThrows(IllegalArgumentException.class, () -> GitBackend.create("svn", configCache));
+    assertThrows(
+        IllegalArgumentException.class, () -> GitBackend.create("push=process", configCache));
+  }
+
+  @Test
+  void processStatusAndRemote(@TempDir Path root) throws Exception {
+    Path origin = root.resolve("origin.git");
+    Path project = root.resolve("my project");
+    assertTrue(GitCommand.run(root, "init", "--quiet", "--bare", origin.toString()).isSuccessful());
+    assertTrue(
+        GitCommand.run(root, "clone", "--quiet", origin.toString(), project.toString())
+            .isSuccessful());
+    Files.writeString(project.resolve("untracked.txt"), "untracked");
+
+    GitBackend backend = GitBackend.create("process", new GitConfigCache());
+    RepositoryStatus status = backend.status(project);
+
+    assertEquals(origin.toString(), backend.getRemoteUrl(project, "origin"));
+    assertEquals(1, status.getUntracked());
+    assertEquals(0, status.getAhead());
+  }
+}
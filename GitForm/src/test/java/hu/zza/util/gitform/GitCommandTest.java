@@ -0,0 +1,87 @@
+package hu.zza.util.gitform;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class GitCommandTest {
+
+  @Test
+  void toCommandLine() {
+    assertEquals(
+        "git clone -- https://github.com/user/repo '/home/user/GIT/my project' 'it'\\''s'",
+        GitCommand.toCommandLine(
+            List.of(
+                "git",
+                "clone",
+                "--",
+                "https://github.com/user/repo",
+                "/home/user/GIT/my project",
+                "it's")));
+  }
+
+  @Test
+  void captureOutput(@TempDir Path root) throws Exception {
+    Path project = root.resolve("my project");
+    assertTrue(GitCommand.run(root, "init", "--quiet", project.toString()).isSuccessful());
+
+    GitCommand.Result result = GitCommand.run(project, "rev-parse", "--is-inside-work-tree");
+
+    assertTrue(result.isSuccessful());
+    assertEquals("true", result.getTrimmedOutput());
+    assertThat(result.getErrorTail()).isEmpty();
+  }
+
+  @Test
+  void keepErrorTailOnFailure(@TempDir Path root) throws Exception {
+    Path missing = root.resolve("missing origin.git");
+
+    GitCommand.Result result =
+        GitCommand.start(root, false, List.of("clone", "--quiet", "--", missing.toString(), "x"))
+            .waitFor();
+
+    assertFalse(result.isSuccessful());
+    assertEquals("", result.getOutput());
+    assertThat(result.getErrorTail()).anyMatch(line -> line.contains("missing origin.git"));
+    assertThat(result.describeFailure("clone"))
+        .startsWith("git clone failed (exit value " + result.getExitValue() + "): ")
+        .contains("missing origin.git");
+    assertThat(result.getCommandLine()).endsWith("'" + missing + "' x");
+  }
+
+  @Test
+  void drainMoreProcessesThanReaders(@TempDir Path root) throws Exception {
+    GitCommand.reserveDrainThreads(3);
+    int readers = GitCommand.getDrainThreadLimit();
+    String noisy = "alias.noisy=!yes noise | head -n 20000 >&2; exit 3";
+    var results = new ArrayList<CompletableFuture<GitCommand.Result>>();
+
+    for (int i = 0; i < 2 * readers; i++) {
+      results.add(
+          CompletableFuture.supplyAsync(
+              () -> {
+                try {
+                  return GitCommand.run(root, "-c", noisy, "noisy");
+                } catch (Exception e) {
+                  throw new RuntimeException(e);
+                }
+              },
+              runnable -> new Thread(runnable).start()));
+    }
+    for (var result : results) {
+      assertThat(result.get(30, TimeUnit.SECONDS).getErrorTail())
+          .hasSize(10)
+          .allMatch("noise"::equals);
+    }
+    assertThat(readers).isGreaterThanOrEqualTo(3);
+  }
+}
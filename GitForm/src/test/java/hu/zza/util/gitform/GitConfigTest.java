@@ -0,0 +1,73 @@
+package hu.zza.util.gitform;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class GitConfigTest {
+  String content =
+      String.join(
+          "\n",
+          "[core]",
+          "\tbare = false",
+          "\tfilemode",
+          "[remote \"upstream\"]",
+          "\turl = git@github.com:other/project.git",
+          "# a comment",
+          "[Remote \"origin\"]",
+          "\tURL = git@github.com:user/project.git ; trailing comment",
+          "\turl = git@gitlab.com:user/project.git",
+          "[alias]",
+          "\tlg = \"log --oneline \\\"x\\\"\" \\",
+          "  --graph");
+
+  @Test
+  void parse() throws IOException {
+    var config = GitConfig.parse(content);
+
+    assertEquals("false", config.get("core.bare"));
+    assertEquals("true", config.get("core.fileMode"));
+    assertEquals("git@github.com:user/project.git", config.getRemoteUrl("origin"));
+    assertEquals("git@github.com:other/project.git", config.getRemoteUrl("upstream"));
+    assertThat(config.getAll("remote.origin.url")).hasSize(2);
+    assertEquals("log --oneline \"x\"   --graph", config.get("alias.lg"));
+  }
+
+  @Test
+  void parseInvalid() {
+    var exception =
+        assertThrows(IOException.class, () -> GitConfig.parse("[core]\n\tbare = \"false\n"));
+
+    assertThat(exception.getMessage()).contains("line 2");
+  }
+
+  @Test
+  void readIncludes(@TempDir Path projectRoot) throws IOException {
+    Files.createDirectories(projectRoot.resolve(".git"));
+    Files.writeString(projectRoot.resolve("remotes.cfg"), "[remote \"origin\"]\n\turl = A\n");
+    Files.writeString(projectRoot.resolve(".git/config"), "[include]\n\tpath = ../remotes.cfg\n");
+
+    var config = GitConfig.read(GitConfig.findConfigFile(projectRoot));
+
+    assertEquals("A", config.getRemoteUrl("origin"));
+    assertThat(config.getFiles()).hasSize(2);
+  }
+
+  @Test
+  void findConfigFileOfWorktree(@TempDir Path root) throws IOException {
+    Path worktreeGitDir = root.resolve("main/.git/worktrees/feature");
+    Files.createDirectories(worktreeGitDir);
+    Files.writeString(worktreeGitDir.resolve("commondir"), "../..\n");
+    Files.createDirectories(root.resolve("feature"));
+    Files.writeString(root.resolve("feature/.git"), "gitdir: ../main/.git/worktrees/feature\n");
+
+    assertEquals(
+        root.resolve("main/.git/config"), GitConfig.findConfigFile(root.resolve("feature")));
+  }
+}
@@ -0,0 +1,82 @@
+package hu.zza.util.gitform;
+
+import static hu.zza.util.gitform.TestSupport.awaitNonNull;
+import static hu.zza.util.gitform.TestSupport.timeoutMillis;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class GitFormDaemonTest {
+  @TempDir Path home;
+  private String originalHome;
+  private Path socketFile;
+  private Thread daemonThread;
+
+  @BeforeEach
+  void setup() throws Exception {
+    originalHome = System.getProperty("user.home");
+    System.setProperty("user.home", home.toString());
+    Files.createDirectories(home.resolve("GIT"));
+    socketFile = new Settings().getDaemonSocketFile();
+    daemonThread = new Thread(() -> GitFormDaemon.main(new String[0]));
+    daemonThread.setDaemon(true);
+    daemonThread.start();
+
+    awaitNonNull(() -> GitFormClient.connect(socketFile)).close();
+  }
+
+  @AfterEach
+  void tearDown() throws InterruptedException {
+    if (daemonThread.isAlive()) {
+      request("stop");
+      daemonThread.join(timeoutMillis);
+    }
+    System.setProperty("user.home", originalHome);
+  }
+
+  @Test
+  void serveCommands() throws Exception {
+    assertThat(request("save")).contains("Save GitHub projects");
+    assertThat(request("save")).contains("Save GitHub projects");
+    assertThat(request("watch")).contains("The daemon runs");
+    assertThat(request("stop")).contains("The daemon has stopped.");
+
+    daemonThread.join(timeoutMillis);
+    assertThat(daemonThread.isAlive()).isFalse();
+    assertThat(socketFile).doesNotExist();
+    assertThat(GitFormClient.connect(socketFile)).isNull();
+  }
+
+  @Test
+  void serveOnlyPlainCommandLines() {
+    assertThat(GitFormClient.isServed(new String[] {"status", "--fetch"})).isTrue();
+    assertThat(GitFormClient.isServed(new String[] {"stop"})).isTrue();
+    assertThat(GitFormClient.isServed(new String[] {"watch"})).isFalse();
+    assertThat(GitFormClient.isServed(new String[] {"save", "--events"})).isFalse();
+    assertThat(GitFormClient.isServed(new String[] {"load", "a\nb"})).isFalse();
+    assertThat(GitFormClient.isServed(new String[0])).isFalse();
+    assertThat(new String(GitFormClient.encodeRequest(new String[] {"status", "--full"})))
+        .isEqualTo("status\n--full\n\n");
+  }
+
+  private String request(String... args) {
+    try (SocketChannel channel = GitFormClient.connect(socketFile)) {
+      assertThat(channel).isNotNull();
+      channel.write(ByteBuffer.wrap(GitFormClient.encodeRequest(args)));
+      channel.shutdownOutput();
+      return new String(Channels.newInputStream(channel).readAllBytes(), StandardCharsets.UTF_8);
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+}
@@ -0,0 +1,64 @@
+package hu.zza.util.gitform;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class GitFormManifestTest {
+  List<GitHubProject> projects =
+      List.of(
+          new GitHubProject(Path.of("projectA"), "git@github.com:user/projectA.git"),
+          new GitHubProject(Path.of("B/projectB"), "git@github.com:user/projectB.git"));
+
+  @Test
+  void writeAndRead(@TempDir Path gitFormRoot) throws IOException {
+    Path manifestFile = gitFormRoot.resolve(GitFormManifest.fileName);
+    GitFormManifest.write(manifestFile, projects);
+
+    assertThat(GitFormManifest.read(manifestFile))
+        .containsExactlyElementsOf(projects)
+        .extracting(GitHubProject::getOriginUrl)
+        .containsExactly("git@github.com:user/projectA.git", "git@github.com:user/projectB.git");
+  }
+
+  @Test
+  void parseEmpty() throws IOException {
+    var buffer =
+        ByteBuffer.wrap("gitform-manifest: 1\ncount: 0\n".getBytes(StandardCharsets.UTF_8));
+
+    assertThat(GitFormManifest.parse(buffer)).isEmpty();
+  }
+
+  @Test
+  void parseInvalid() {
+    var buffer =
+        ByteBuffer.wrap(
+            "gitform-manifest: 1\ncount: 2\nindex: 4 47\n---\n".getBytes(StandardCharsets.UTF_8));
+
+    assertThrows(IOException.class, () -> GitFormManifest.parse(buffer));
+  }
+
+  @Test
+  void parseCorruptHeader() {
+    for (String header :
+        new String[] {
+          "gitform-manifest: 1\ncount: x\n---\n",
+          "gitform-manifest: 1\ncount: -1\n---\n",
+          "gitform-manifest: 1\ncount: 1\nindex: 4\n---\n",
+          "gitform-manifest: 1\ncount: 1\nindex: 0 y\n---\n"
+        }) {
+      var buffer = ByteBuffer.wrap(header.getBytes(StandardCharsets.UTF_8));
+
+      assertThat(assertThrows(IOException.class, () -> GitFormManifest.parse(buffer)))
+          .as(header)
+          .hasMessageStartingWith("Invalid manifest header: ");
+    }
+  }
+}
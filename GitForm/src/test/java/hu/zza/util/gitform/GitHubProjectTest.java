@@ -3,10 +3,12 @@ package hu.zza.util.gitform;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.util.Lists.list;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 import java.io.IOException;
 import java.nio.file.Path;
 import java.util.List;
+import java.util.Map;
 import org.junit.jupiter.api.Test;
 
 class GitHubProjectTest {
@@ -45,4 +47,24 @@ class GitHubProjectTest {
   void getExportList() {
     assertEquals(rawLines, project.getExportList());
   }
+
+  @Test
+  void exportAndParseCloneProfile() {
+    var shallow =
+        new GitHubProject(
+            "Project name", Path.of("path"), "Origin URL", CloneProfile.parse("depth=1"));
+    List<String> lines = shallow.getExportList();
+
+    assertEquals("clone: depth=1", lines.get(3));
+    assertEquals(
+        CloneProfile.parse("depth=1"), GitHubProject.parse(lines.stream()).getCloneProfile());
+  }
+
+  @Test
+  void parseIncompleteMap() {
+    var map = Map.of("name", "Project name", "local", " ");
+
+    assertEquals(List.of("local", "origin"), GitHubProject.getMissingKeys(map));
+    assertThrows(IllegalArgumentException.class, () -> GitHubProject.parse(map));
+  }
 }
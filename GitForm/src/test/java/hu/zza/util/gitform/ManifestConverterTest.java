@@ -0,0 +1,122 @@
+package hu.zza.util.gitform;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ManifestConverterTest {
+  @TempDir Path home;
+  private Path gitFormRoot;
+  private Settings settings;
+
+  @BeforeEach
+  void setup() throws Exception {
+    Path gitRoot = home.resolve("GIT");
+    gitFormRoot = gitRoot.resolve("GitForm");
+    Files.createDirectories(gitFormRoot);
+    settings =
+        new Settings(
+            home,
+            home.resolve(".git-form"),
+            home.resolve(".git-form").resolve("settings.yaml"),
+            gitRoot,
+            gitFormRoot);
+  }
+
+  @Test
+  void packEveryDocument() throws Exception {
+    Path projectFile = gitFormRoot.resolve("projects.yaml");
+    Files.writeString(projectFile, projectYaml("a", "A") + "---\n" + projectYaml("b", "B"));
+
+    var report = new ResultReport();
+    new ManifestConverter(settings, report).pack();
+
+    assertThat(projectFile).doesNotExist();
+    assertThat(GitFormManifest.read(settings.getManifestFile()))
+        .extracting(GitHubProject::getOriginUrl)
+        .containsExactly(originUrl("A"), originUrl("B"));
+  }
+
+  @Test
+  void replacePackedProject() throws Exception {
+    GitFormManifest.write(
+        settings.getManifestFile(),
+        List.of(new GitHubProject("a", Path.of("a"), originUrl("old"))));
+    Path projectFile = gitFormRoot.resolve("a.yaml");
+    Files.writeString(projectFile, projectYaml("a", "new") + "clone: depth=1\n");
+
+    var report = new ResultReport();
+    new ManifestConverter(settings, report).pack();
+
+    assertThat(projectFile).doesNotExist();
+    assertThat(GitFormManifest.read(settings.getManifestFile()))
+        .singleElement()
+        .satisfies(
+            project -> {
+              assertThat(project.getOriginUrl()).isEqualTo(originUrl("new"));
+              assertThat(project.getCloneProfile()).hasToString("depth=1");
+            });
+    assertThat(report.toString()).contains(String.format("Replaced in manifest:%n\t\t- a%n"));
+  }
+
+  @Test
+  void keepConflictingProjectFile() throws Exception {
+    Path first = gitFormRoot.resolve("a1.yaml");
+    Path same = gitFormRoot.resolve("a2.yaml");
+    Path conflicting = gitFormRoot.resolve("a3.yaml");
+    Files.writeString(first, projectYaml("a", "A"));
+    Files.writeString(same, projectYaml("a", "A"));
+    Files.writeString(conflicting, projectYaml("a", "other"));
+
+    var report = new ResultReport();
+    new ManifestConverter(settings, report).pack();
+
+    assertThat(first).doesNotExist();
+    assertThat(same).doesNotExist();
+    assertThat(conflicting).hasContent(projectYaml("a", "other"));
+    assertThat(GitFormManifest.read(settings.getManifestFile()))
+        .extracting(GitHubProject::getOriginUrl)
+        .containsExactly(originUrl("A"));
+    assertThat(report.toString())
+        .contains(String.format("Project already exists:%n\t\t- a%n"))
+        .contains(String.format("Conflicting project file (kept):%n\t\t- %s (a)%n", conflicting));
+  }
+
+  @Test
+  void keepManifestWithConflictingProjectFile() throws Exception {
+    var same = new GitHubProject("a", Path.of("a"), originUrl("A"));
+    var changed = new GitHubProject("b", Path.of("b"), originUrl("B"));
+    GitFormManifest.write(settings.getManifestFile(), List.of(same, changed));
+    Files.writeString(gitFormRoot.resolve(same.getFileName()), projectYaml("a", "A"));
+    Path conflicting = gitFormRoot.resolve(changed.getFileName());
+    Files.writeString(conflicting, projectYaml("b", "other"));
+
+    var report = new ResultReport();
+    new ManifestConverter(settings, report).unpack();
+
+    assertThat(settings.getManifestFile()).exists();
+    assertThat(conflicting).hasContent(projectYaml("b", "other"));
+    assertThat(report.toString())
+        .contains(String.format("Project already exists:%n\t\t- a%n"))
+        .contains(String.format("Conflicting project file (kept):%n\t\t- %s (b)%n", conflicting));
+
+    Files.delete(conflicting);
+    new ManifestConverter(settings, report).unpack();
+
+    assertThat(settings.getManifestFile()).doesNotExist();
+    assertThat(GitHubProject.parse(conflicting).getOriginUrl()).isEqualTo(originUrl("B"));
+  }
+
+  private static String projectYaml(String local, String repository) {
+    return String.format("name: %s%nlocal: %s%norigin: %s%n", local, local, originUrl(repository));
+  }
+
+  private static String originUrl(String repository) {
+    return "git@github.com:user/" + repository + ".git";
+  }
+}
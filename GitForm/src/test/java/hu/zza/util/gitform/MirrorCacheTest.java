@@ -0,0 +1,81 @@
+package hu.zza.util.gitform;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class MirrorCacheTest {
+
+  @Test
+  void normalizeUrl() {
+    assertEquals("github.com/user/repo", MirrorCache.normalizeUrl("git@github.com:user/repo.git"));
+    assertEquals("github.com/user/repo", MirrorCache.normalizeUrl("https://GitHub.com/user/repo/"));
+    assertEquals(
+        "github.com/user/repo", MirrorCache.normalizeUrl("ssh://git@github.com:22/user/repo.git"));
+    assertEquals("/srv/git/repo", MirrorCache.normalizeUrl("file:///srv/git/repo.git"));
+  }
+
+  @Test
+  void prepareFromBareRepository(@TempDir Path root) throws Exception {
+    Path origin = root.resolve("origin.git");
+    assertTrue(GitCommand.run(root, "init", "--quiet", "--bare", origin.toString()).isSuccessful());
+    var cache = new MirrorCache(root.resolve("mirrors"), Long.MAX_VALUE);
+
+    Path mirror = cache.prepare("file://" + origin);
+
+    assertEquals(cache.getMirror(origin.toString()), mirror);
+    assertTrue(Files.exists(mirror.resolve("HEAD")));
+    assertEquals(mirror, cache.prepare("file://" + origin));
+  }
+
+  @Test
+  void neverTakeTheUrlForAnOption(@TempDir Path root) {
+    Path marker = root.resolve("injected");
+    var cache = new MirrorCache(root.resolve("mirrors"), Long.MAX_VALUE);
+
+    String url = "--upload-pack=touch " + marker;
+
+    assertThat(assertThrows(IOException.class, () -> cache.prepare(url)))
+        .hasMessageContaining("'" + url + "' does not exist");
+    assertThat(marker).doesNotExist();
+  }
+
+  @Test
+  void evictLeastRecentlyUsed(@TempDir Path cacheDirectory) throws IOException {
+    createMirror(cacheDirectory.resolve("old.git"), 1_000);
+    createMirror(cacheDirectory.resolve("new.git"), 3_000);
+    createMirror(cacheDirectory.resolve("newest.git"), 2_000);
+    var cache = new MirrorCache(cacheDirectory, 250);
+
+    assertThat(cache.evict()).containsExactly(cacheDirectory.resolve("old.git"));
+    assertThat(cacheDirectory.resolve("new.git")).exists();
+  }
+
+  @Test
+  void evictUsedMirrorOverTheLimit(@TempDir Path root) throws Exception {
+    Path origin = root.resolve("origin.git");
+    assertTrue(GitCommand.run(root, "init", "--quiet", "--bare", origin.toString()).isSuccessful());
+    var cache = new MirrorCache(root.resolve("mirrors"), 0);
+    Path mirror = cache.prepare("file://" + origin);
+
+    assertThat(cache.evict()).containsExactly(mirror);
+    assertThat(mirror).doesNotExist();
+    assertEquals(mirror, cache.prepare("file://" + origin));
+    assertTrue(Files.exists(mirror.resolve("HEAD")));
+  }
+
+  private static void createMirror(Path mirror, long lastUsed) throws IOException {
+    Files.createDirectories(mirror);
+    Files.write(mirror.resolve("pack"), new byte[100]);
+    Path lastUsedFile = Files.writeString(mirror.resolve("gitform-last-used"), "");
+    Files.setLastModifiedTime(lastUsedFile, FileTime.fromMillis(lastUsed));
+  }
+}
@@ -0,0 +1,281 @@
+package hu.zza.util.gitform;
+
+import static hu.zza.util.gitform.TestSupport.awaitTrue;
+import static hu.zza.util.gitform.TestSupport.git;
+import static hu.zza.util.gitform.TestSupport.output;
+import static hu.zza.util.gitform.TestSupport.timeoutMillis;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ProjectBuilderTest {
+  @TempDir Path home;
+  private Path origin;
+  private Path gitRoot;
+  private Path gitFormRoot;
+  private Settings settings;
+  private Thread builderThread;
+
+  @BeforeEach
+  void setup() throws Exception {
+    origin = home.resolve("origin.git");
+    gitRoot = home.resolve("GIT");
+    gitFormRoot = gitRoot.resolve("GitForm");
+    git(home, "init", "--quiet", "--bare", "--initial-branch=main", origin.toString());
+    Files.createDirectories(gitFormRoot);
+
+    settings =
+        new Settings(
+            home,
+            home.resolve(".git-form"),
+            home.resolve(".git-form").resolve("settings.yaml"),
+            gitRoot,
+            gitFormRoot);
+  }
+
+  @AfterEach
+  void tearDown() throws InterruptedException {
+    if (builderThread != null) {
+      builderThread.interrupt();
+      builderThread.join(timeoutMillis);
+    }
+  }
+
+  @Test
+  void loadNewProjectFiles() throws Exception {
+    writeProject("existing.yaml", "existing");
+    var builder = new ProjectBuilder(settings);
+    builderThread =
+        new Thread(
+            () -> {
+              try {
+                builder.loadAndWatch();
+              } catch (IOException e) {
+                throw new RuntimeException(e);
+              } catch (InterruptedException ignored) {
+                // The end of the test.
+              }
+            });
+    builderThread.start();
+    awaitTrue(() -> Files.isDirectory(gitRoot.resolve("existing/.git")));
+
+    Path partial = gitFormRoot.resolve("partial.yaml");
+    Files.writeString(partial, "name: partial\nlocal: B/partial\n");
+    Thread.sleep(100);
+    Files.writeString(partial, "name: partial\nlocal: B/partial\norigin: " + origin + "\n");
+    Files.writeString(gitFormRoot.resolve(".hidden.yaml"), projectYaml("hidden"));
+    awaitTrue(() -> Files.isDirectory(gitRoot.resolve("B/partial/.git")));
+
+    writeProject("moved.yaml.tmp", "moved");
+    Files.move(gitFormRoot.resolve("moved.yaml.tmp"), gitFormRoot.resolve("moved.yaml"));
+    awaitTrue(() -> Files.isDirectory(gitRoot.resolve("moved/.git")));
+    assertTrue(Files.notExists(gitRoot.resolve("hidden")));
+  }
+
+  @Test
+  void cloneLocallyOnlyFromTheClonesOfTheRun() throws Exception {
+    String url = origin.toUri().toString();
+    pushCommit(cloneOrigin("work"), "README.md");
+    Path existing = cloneOrigin("existing");
+    git(existing, "checkout", "--quiet", "-b", "wip");
+    commit(existing, "wip.txt");
+    Files.writeString(
+        gitFormRoot.resolve("projects.yaml"),
+        String.join(
+            "---\n",
+            projectYaml("existing", url),
+            projectYaml("first", url),
+            projectYaml("second", url)));
+
+    var builder = new ProjectBuilder(settings);
+    builder.load();
+
+    String originHead = output(origin, "rev-parse", "main");
+    for (String name : new String[] {"first", "second"}) {
+      Path clone = gitRoot.resolve(name);
+      assertThat(output(clone, "symbolic-ref", "--short", "HEAD")).isEqualTo("main");
+      assertThat(output(clone, "rev-parse", "HEAD")).isEqualTo(originHead);
+      assertThat(output(clone, "rev-parse", "--abbrev-ref", "@{upstream}"))
+          .isEqualTo("origin/main");
+      assertThat(output(clone, "for-each-ref", "--format=%(refname)", "refs/remotes"))
+          .isEqualTo("refs/remotes/origin/HEAD\nrefs/remotes/origin/main");
+      assertThat(output(clone, "remote", "get-url", "origin")).isEqualTo(url);
+    }
+    assertThat(builder.getMetrics().getCount("clones_local")).isEqualTo(1);
+    assertThat(output(existing, "symbolic-ref", "--short", "HEAD")).isEqualTo("wip");
+  }
+
+  @Test
+  void reportInvalidProjectFiles() throws Exception {
+    String url = origin.toUri().toString();
+    Path malformed = gitFormRoot.resolve("malformed.yaml");
+    Path incomplete = gitFormRoot.resolve("incomplete.yaml");
+    Files.writeString(malformed, "name: malformed\n\nlocal malformed\n");
+    Files.writeString(
+        incomplete, projectYaml("valid", url) + "---\nname: no-origin\nlocal: no-origin\n");
+
+    var report = new ResultReport();
+    new ProjectBuilder(settings, report).load();
+
+    assertThat(report.toString())
+        .contains(String.format("Cannot parse project file:%n\t\t- %s (", malformed))
+        .containsPattern("\\Q" + malformed + " (\\E.*line 3")
+        .contains(
+            String.format("Invalid project entry:%n\t\t- %s #2 (missing: origin)%n", incomplete))
+        .contains(String.format("\t- valid%n"));
+    assertThat(gitRoot.resolve("valid/.git")).isDirectory();
+    assertThat(gitRoot.resolve("no-origin")).doesNotExist();
+  }
+
+  @Test
+  void emitExitValueOfClones() throws Exception {
+    String url = origin.toUri().toString();
+    pushCommit(cloneOrigin("work"), "README.md");
+    Files.writeString(
+        gitFormRoot.resolve("projects.yaml"),
+        String.join(
+            "---\n",
+            projectYaml("cloned", url),
+            projectYaml("missing", home.resolve("missing.git").toUri().toString())));
+    Path eventFile = home.resolve("events.jsonl");
+
+    try (var events = EventLog.open(eventFile)) {
+      new ProjectBuilder(settings, new ResultReport(), events).load();
+    }
+    assertThat(Files.readAllLines(eventFile))
+        .filteredOn(line -> line.contains("\"event\":\"clone_finished\""))
+        .hasSize(2)
+        .anyMatch(line -> line.contains("\"project\":\"cloned\",\"exit\":0,\"successful\":true"))
+        .anyMatch(
+            line -> line.contains("\"project\":\"missing\",\"exit\":128,\"successful\":false"));
+  }
+
+  @Test
+  void syncExistingProjects() throws Exception {
+    String url = origin.toUri().toString();
+    Path work = cloneOrigin("work");
+    pushCommit(work, "README.md");
+    Path updated = cloneOrigin("updated");
+    Path diverged = cloneOrigin("diverged");
+    Path dirty = cloneOrigin("dirty");
+    Path noUpstream = cloneOrigin("no-upstream");
+    String oldHead = output(work, "rev-parse", "HEAD");
+    pushCommit(work, "CHANGELOG.md");
+    cloneOrigin("up-to-date");
+    commit(diverged, "local.txt");
+    Files.writeString(dirty.resolve("README.md"), "local change");
+    git(noUpstream, "checkout", "--quiet", "-b", "local");
+    String divergedHead = output(diverged, "rev-parse", "HEAD");
+    Files.writeString(
+        gitFormRoot.resolve("projects.yaml"),
+        String.join(
+            "---\n",
+            projectYaml("updated", url),
+            projectYaml("up-to-date", url),
+            projectYaml("diverged", url),
+            projectYaml("dirty", url),
+            projectYaml("no-upstream", url)));
+
+    var report = new ResultReport();
+    var builder = new ProjectBuilder(settings, report);
+    builder.sync();
+
+    String newHead = output(origin, "rev-parse", "main");
+    assertThat(output(updated, "rev-parse", "HEAD")).isEqualTo(newHead);
+    assertThat(output(diverged, "rev-parse", "HEAD")).isEqualTo(divergedHead);
+    assertThat(output(dirty, "rev-parse", "HEAD")).isEqualTo(oldHead);
+    assertThat(output(dirty, "rev-parse", "origin/main")).isEqualTo(newHead);
+    assertThat(dirty.resolve("README.md")).hasContent("local change");
+    assertThat(dirty.resolve("CHANGELOG.md")).doesNotExist();
+    assertThat(output(dirty, "status", "--porcelain")).isEqualTo("M README.md");
+    assertThat(output(noUpstream, "rev-parse", "HEAD")).isEqualTo(oldHead);
+
+    assertThat(report.toString())
+        .contains(String.format("\t- updated (updated)%n"))
+        .contains(String.format("Up to date:%n\t\t- up-to-date%n"))
+        .contains(String.format("Diverged from upstream (not updated):%n\t\t- diverged%n"))
+        .contains(String.format("Uncommitted changes (not updated):%n\t\t- dirty%n"))
+        .contains(String.format("No upstream branch (not updated):%n\t\t- no-upstream%n"))
+        .doesNotContain("Cannot sync project:");
+    for (String counter :
+        new String[] {
+          "projects_updated",
+          "projects_up_to_date",
+          "projects_diverged",
+          "projects_dirty",
+          "projects_without_upstream"
+        }) {
+      assertThat(builder.getMetrics().getCount(counter)).as(counter).isEqualTo(1);
+    }
+  }
+
+  @Test
+  void mirrorOnlyFullClones() throws Exception {
+    String url = origin.toUri().toString();
+    pushCommit(cloneOrigin("work"), "README.md");
+    settings.setMirrorCacheSize(1);
+    var mirrorCache = new MirrorCache(settings.getMirrorCachePath(), 1 << 20);
+
+    Files.writeString(
+        gitFormRoot.resolve("shallow.yaml"), projectYaml("shallow", url) + "clone: depth=1\n");
+    new ProjectBuilder(settings).load();
+    assertThat(gitRoot.resolve("shallow/.git/shallow")).exists();
+    assertThat(mirrorCache.getMirror(url)).doesNotExist();
+
+    Files.writeString(gitFormRoot.resolve("full.yaml"), projectYaml("full", url));
+    new ProjectBuilder(settings).load();
+    assertThat(gitRoot.resolve("full/.git")).isDirectory();
+    assertThat(mirrorCache.getMirror(url)).isDirectory();
+  }
+
+  private String projectYaml(String name) {
+    return projectYaml(name, origin.toString());
+  }
+
+  private static String projectYaml(String name, String originUrl) {
+    return String.format("name: %s%nlocal: %s%norigin: %s%n", name, name, originUrl);
+  }
+
+  private void writeProject(String fileName, String name) throws IOException {
+    Files.writeString(gitFormRoot.resolve(fileName), projectYaml(name));
+  }
+
+  /**
+   * @param name the name of the clone in {@code gitRoot}
+   * @return the {@link Path} of a new clone of the origin (a checkout of the user)
+   */
+  private Path cloneOrigin(String name) throws Exception {
+    Path clone = gitRoot.resolve(name);
+    git(home, "clone", "--quiet", origin.toUri().toString(), clone.toString());
+    return clone;
+  }
+
+  /** Commits a new file in the {@code work} clone, and pushes it to the origin. */
+  private static void pushCommit(Path work, String fileName) throws Exception {
+    commit(work, fileName);
+    git(work, "push", "--quiet", "origin", "HEAD:main");
+  }
+
+  /** Commits a new file to the current branch of {@code repository}. */
+  private static void commit(Path repository, String fileName) throws Exception {
+    Files.writeString(repository.resolve(fileName), fileName);
+    git(repository, "add", fileName);
+    git(
+        repository,
+        "-c",
+        "user.name=GitForm",
+        "-c",
+        "user.email=git-form@example.com",
+        "commit",
+        "--quiet",
+        "-m",
+        fileName);
+  }
+}
@@ -0,0 +1,102 @@
+package hu.zza.util.gitform;
+
+import static hu.zza.util.gitform.TestSupport.awaitTrue;
+import static hu.zza.util.gitform.TestSupport.git;
+import static hu.zza.util.gitform.TestSupport.timeoutMillis;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ProjectWatcherTest {
+  @TempDir Path home;
+  private Path gitRoot;
+  private Path gitFormRoot;
+  private Thread watcherThread;
+
+  @BeforeEach
+  void setup() throws Exception {
+    gitRoot = home.resolve("GIT");
+    gitFormRoot = gitRoot.resolve("GitForm");
+    createRepository("projectA", "https://github.com/user/projectA.git");
+
+    var settings =
+        new Settings(
+            home,
+            home.resolve(".git-form"),
+            home.resolve(".git-form").resolve("settings.yaml"),
+            gitRoot,
+            gitFormRoot);
+    var watcher = new ProjectWatcher(settings, new ResultReport(), EventLog.disabled);
+    watcherThread =
+        new Thread(
+            () -> {
+              try {
+                watcher.watch();
+              } catch (IOException e) {
+                throw new RuntimeException(e);
+              } catch (InterruptedException ignored) {
+                // The end of the test.
+              }
+            });
+    watcherThread.start();
+  }
+
+  @AfterEach
+  void tearDown() throws InterruptedException {
+    watcherThread.interrupt();
+    watcherThread.join(timeoutMillis);
+  }
+
+  @Test
+  void followRepositoryChanges() throws Exception {
+    Path fileA = gitFormRoot.resolve(projectFileName("projectA", "projectA"));
+    awaitTrue(() -> Files.exists(fileA));
+
+    createRepository("B/projectB", "git@github.com:user/projectB.git");
+    Path fileB = gitFormRoot.resolve(projectFileName("B/projectB", "projectB"));
+    awaitTrue(() -> Files.exists(fileB));
+
+    git(gitRoot.resolve("B/projectB"), "remote", "set-url", "origin", "git@github.com:user/c.git");
+    Path fileC = gitFormRoot.resolve(projectFileName("B/projectB", "c"));
+    awaitTrue(() -> Files.exists(fileC) && Files.notExists(fileB));
+
+    Files.createDirectories(gitRoot.resolve("moved"));
+    Files.move(gitRoot.resolve("projectA"), gitRoot.resolve("moved/projectA"));
+    Path movedFileA = gitFormRoot.resolve(projectFileName("moved/projectA", "projectA"));
+    awaitTrue(() -> Files.exists(movedFileA) && Files.notExists(fileA));
+    assertThat(Files.readAllLines(movedFileA)).contains("local: moved/projectA");
+
+    deleteRecursively(gitRoot.resolve("B"));
+    awaitTrue(() -> Files.notExists(fileC));
+    assertTrue(Files.exists(movedFileA));
+  }
+
+  private static String projectFileName(String projectRoot, String name) {
+    return new GitHubProject(Path.of(projectRoot), "https://github.com/user/" + name + ".git")
+        .getFileName();
+  }
+
+  private void createRepository(String relativeRoot, String originUrl) throws Exception {
+    Path projectRoot = gitRoot.resolve(relativeRoot);
+    Files.createDirectories(projectRoot);
+    git(projectRoot, "init", "--quiet");
+    git(projectRoot, "remote", "add", "origin", originUrl);
+  }
+
+  private static void deleteRecursively(Path directory) throws IOException {
+    try (Stream<Path> paths = Files.walk(directory)) {
+      for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+        Files.delete(path);
+      }
+    }
+  }
+}
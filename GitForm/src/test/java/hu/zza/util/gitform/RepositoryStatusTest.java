@@ -0,0 +1,53 @@
+package hu.zza.util.gitform;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class RepositoryStatusTest {
+
+  @Test
+  void parsePorcelain() {
+    String porcelain =
+        String.join(
+            "\n",
+            "# branch.oid 4b48688b2bd2bd3ec7fdfc4de1b58d4a0a7fc1a3",
+            "# branch.head main",
+            "# branch.upstream origin/main",
+            "# branch.ab +2 -1",
+            "1 .M N... 100644 100644 100644 e69de29 e69de29 README.md",
+            "1 MM N... 100644 100644 100644 e69de29 e69de29 src/A.java",
+            "2 R. N... 100644 100644 100644 e69de29 e69de29 R100 B.java\tA.java",
+            "u UU N... 100644 100644 100644 100644 e69de29 e69de29 e69de29 C.java",
+            "? new file.txt",
+            "");
+    var status = RepositoryStatus.parse(porcelain);
+
+    assertEquals("main", status.getBranch());
+    assertEquals("origin/main", status.getUpstream());
+    assertEquals(2, status.getAhead());
+    assertEquals(1, status.getBehind());
+    assertEquals(2, status.getStaged());
+    assertEquals(2, status.getUnstaged());
+    assertEquals(1, status.getUntracked());
+    assertEquals(1, status.getConflicted());
+    assertEquals(
+        "[main] ahead 2, behind 1, 2 staged, 2 unstaged, 1 untracked, 1 conflicted",
+        status.toString());
+  }
+
+  @Test
+  void parseCleanAndDetached() {
+    var clean =
+        RepositoryStatus.parse(
+            "# branch.head main\n# branch.upstream origin/main\n# branch.ab +0 -0\n");
+    var detached = RepositoryStatus.parse("# branch.oid 4b48688\n# branch.head (detached)\n");
+
+    assertTrue(clean.isSynchronized());
+    assertEquals("[main] up to date, clean", clean.toString());
+    assertFalse(detached.isSynchronized());
+    assertEquals("[(detached)] no upstream, clean", detached.toString());
+  }
+}
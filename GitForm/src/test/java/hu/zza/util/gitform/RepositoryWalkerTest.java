@@ -0,0 +1,80 @@
+package hu.zza.util.gitform;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class RepositoryWalkerTest {
+  @TempDir Path gitRoot;
+  ResultReport report = new ResultReport();
+
+  @BeforeEach
+  void setup() throws IOException {
+    Files.createDirectories(gitRoot.resolve("projectA/.git"));
+    Files.createDirectories(gitRoot.resolve("projectA/nested/.git"));
+    Files.createDirectories(gitRoot.resolve("B/projectB/.git"));
+    Files.createDirectories(gitRoot.resolve("B/C/D/projectD/.git"));
+    Files.createDirectories(gitRoot.resolve("node_modules/dependency/.git"));
+    Files.createDirectories(gitRoot.resolve("archive/old/.git"));
+  }
+
+  @Test
+  void walkStopsAtProjectRoots() {
+    var walker = new RepositoryWalker(gitRoot, Integer.MAX_VALUE, 2, report, List.of());
+
+    assertThat(walker.walk())
+        .containsExactly(
+            gitRoot.resolve("B/C/D/projectD"),
+            gitRoot.resolve("B/projectB"),
+            gitRoot.resolve("archive/old"),
+            gitRoot.resolve("node_modules/dependency"),
+            gitRoot.resolve("projectA"));
+  }
+
+  @Test
+  void walkSkipsIgnoredDirectories() {
+    var walker =
+        new RepositoryWalker(
+            gitRoot, Integer.MAX_VALUE, 2, report, List.of("node_modules", "/archive/**"));
+
+    assertThat(walker.walk())
+        .containsExactly(
+            gitRoot.resolve("B/C/D/projectD"),
+            gitRoot.resolve("B/projectB"),
+            gitRoot.resolve("projectA"));
+  }
+
+  @Test
+  void walkRespectsMaxDepth() {
+    var walker = new RepositoryWalker(gitRoot, 2, 2, report, List.of());
+
+    assertThat(walker.walk())
+        .containsExactly(
+            gitRoot.resolve("B/projectB"),
+            gitRoot.resolve("archive/old"),
+            gitRoot.resolve("node_modules/dependency"),
+            gitRoot.resolve("projectA"));
+  }
+
+  @Test
+  void walkReusesScanIndex() throws IOException {
+    var walker = new RepositoryWalker(gitRoot, Integer.MAX_VALUE, 2, report, List.of());
+    var indexFile = gitRoot.resolve("scan-index");
+    var index = new ScanIndex(indexFile, walker.getFingerprint());
+    var firstWalk = walker.walk(index);
+    index.save();
+
+    Files.createDirectories(gitRoot.resolve("B/C/projectC/.git"));
+
+    assertThat(walker.walk(ScanIndex.load(indexFile, walker.getFingerprint())))
+        .containsAll(firstWalk)
+        .contains(gitRoot.resolve("B/C/projectC"))
+        .hasSize(firstWalk.size() + 1);
+  }
+}
@@ -5,8 +5,11 @@ import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.IOException;
+import java.io.StringWriter;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.IntStream;
 import org.junit.jupiter.api.Test;
 
 class ResultReportTest {
@@ -62,4 +65,37 @@ class ResultReportTest {
     report.clear();
     assertEquals(Files.readString(resources.resolve("empty.txt")), report.toString());
   }
+
+  @Test
+  void renderToWriter() throws IOException {
+    report.setMainObjective("A");
+    report.setSuccessful(true);
+    report.appendResult("B");
+    report.appendAdditionalInfo("C", "D");
+    var writer = new StringWriter();
+    report.render(writer);
+
+    assertEquals(Files.readString(resources.resolve("misc.txt")), writer.toString());
+  }
+
+  @Test
+  void appendConcurrently() {
+    CompletableFuture.allOf(
+            IntStream.range(0, 8)
+                .mapToObj(
+                    thread ->
+                        CompletableFuture.runAsync(
+                            () -> {
+                              for (int i = 0; i < 1000; i++) {
+                                report.appendResult(thread + "-" + i);
+                                report.appendAdditionalInfo("Section " + i % 3, thread + "-" + i);
+                              }
+                            }))
+                .toArray(CompletableFuture[]::new))
+        .join();
+
+    String rendered = report.toString();
+    assertEquals(8000, rendered.lines().filter(line -> line.startsWith("\t- ")).count());
+    assertEquals(8000, rendered.lines().filter(line -> line.startsWith("\t\t- ")).count());
+  }
 }
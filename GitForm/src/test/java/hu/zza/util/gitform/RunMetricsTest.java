@@ -0,0 +1,60 @@
+package hu.zza.util.gitform;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class RunMetricsTest {
+
+  @Test
+  void countersAndPhases() {
+    var metrics = new RunMetrics("load");
+    metrics.increment("clones_failed");
+    metrics.add("bytes_written", 40);
+    metrics.add("bytes_written", 2);
+    var timer = metrics.time("parse");
+    try {
+      metrics.processStarted();
+      metrics.processStarted();
+      metrics.processFinished();
+      metrics.processStarted();
+    } finally {
+      timer.stop();
+    }
+
+    assertEquals(1, metrics.getCount("clones_failed"));
+    assertEquals(42, metrics.getCount("bytes_written"));
+    assertEquals(0, metrics.getCount("unknown"));
+    assertEquals(2, metrics.getPeakProcesses());
+    assertThat(metrics.getPhaseNanos("parse")).isPositive();
+  }
+
+  @Test
+  void writeJsonAndPrometheus(@TempDir Path settingsPath) throws IOException {
+    var metrics = new RunMetrics("load");
+    metrics.increment("files_parsed");
+    metrics.recordCloneLatency(TimeUnit.MILLISECONDS.toNanos(700));
+    metrics.recordCloneLatency(TimeUnit.SECONDS.toNanos(400));
+    metrics.finish();
+    metrics.write(settingsPath.resolve("metrics"));
+
+    assertThat(Files.readString(settingsPath.resolve("metrics/load.json")))
+        .contains("\"command\": \"load\"")
+        .contains("\"files_parsed\": 1")
+        .contains("\"count\": 2")
+        .contains("\"0.5\": 0, \"1.0\": 1");
+    assertThat(Files.readAllLines(settingsPath.resolve("metrics/load.prom")))
+        .contains(
+            "# TYPE gitform_clone_duration_seconds histogram",
+            "gitform_files_parsed_total{command=\"load\"} 1",
+            "gitform_clone_duration_seconds_bucket{command=\"load\",le=\"300.0\"} 1",
+            "gitform_clone_duration_seconds_bucket{command=\"load\",le=\"+Inf\"} 2",
+            "gitform_clone_duration_seconds_count{command=\"load\"} 2");
+  }
+}
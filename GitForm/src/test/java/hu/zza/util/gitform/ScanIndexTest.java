@@ -0,0 +1,98 @@
+package hu.zza.util.gitform;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ScanIndexTest {
+  @TempDir Path settingsPath;
+  Path indexFile;
+  Path configFile;
+  Path includedFile;
+
+  @BeforeEach
+  void setup() throws IOException {
+    indexFile = settingsPath.resolve("scan-index");
+    configFile = Files.writeString(settingsPath.resolve("config"), "[include]\n\tpath = work\n");
+    includedFile = Files.writeString(settingsPath.resolve("work"), "[user]\n\tname = A\n");
+
+    var index = new ScanIndex(indexFile, "A");
+    index.putDirectory(Path.of(""), 1);
+    index.putDirectory(Path.of("B"), 2);
+    index.putRepository(Path.of("B/projectB"), 3);
+    index.putOriginUrl(
+        Path.of("B/projectB"),
+        List.of(GitConfig.FileStamp.of(configFile), GitConfig.FileStamp.of(includedFile)),
+        "git@github.com:user/projectB.git");
+    index.save();
+  }
+
+  @Test
+  void loadPreviousScan() throws IOException {
+    var index = ScanIndex.load(indexFile, "A");
+
+    assertEquals(2, index.getPrevious(Path.of("B")).getModified());
+    assertThat(index.getPreviousChildren(Path.of(""))).containsExactly(Path.of("B"));
+    assertThat(index.getPreviousChildren(Path.of("B"))).containsExactly(Path.of("B/projectB"));
+    assertThat(index.getPrevious(Path.of("B/projectB")).isRepository()).isTrue();
+  }
+
+  @Test
+  void originUrlIsReusedOnlyWithUnchangedConfig() throws IOException {
+    var index = ScanIndex.load(indexFile, "A");
+    var stamp = GitConfig.FileStamp.of(configFile);
+
+    assertEquals(
+        "git@github.com:user/projectB.git", index.getOriginUrl(Path.of("B/projectB"), stamp));
+    assertNull(index.getOriginUrl(Path.of("B/projectB"), GitConfig.FileStamp.of(includedFile)));
+
+    Files.writeString(configFile, "[include]\n\tpath = work\n\n");
+    assertNull(index.getOriginUrl(Path.of("B/projectB"), GitConfig.FileStamp.of(configFile)));
+  }
+
+  @Test
+  void originUrlIsNotReusedWithChangedInclude() throws IOException {
+    var index = ScanIndex.load(indexFile, "A");
+    Files.writeString(includedFile, "[remote \"origin\"]\n\turl = git@github.com:user/other.git\n");
+
+    assertNull(index.getOriginUrl(Path.of("B/projectB"), GitConfig.FileStamp.of(configFile)));
+  }
+
+  @Test
+  void escapeTabsAndLineBreaks() throws IOException {
+    Path project = Path.of("tab\tand\nnew line\\project");
+    var stamp = GitConfig.FileStamp.of(configFile);
+    var index = new ScanIndex(indexFile, "A");
+    index.putRepository(project, 3);
+    index.putOriginUrl(project, List.of(stamp), "file:///tmp/tab\torigin");
+    index.save();
+
+    assertThat(Files.readAllLines(indexFile)).hasSize(3);
+    var loaded = ScanIndex.load(indexFile, "A");
+    assertThat(loaded.getPreviousChildren(Path.of(""))).containsExactly(project);
+    assertEquals("file:///tmp/tab\torigin", loaded.getOriginUrl(project, stamp));
+  }
+
+  @Test
+  void differentFingerprintDropsPreviousScan() throws IOException {
+    var index = ScanIndex.load(indexFile, "B");
+
+    assertNull(index.getPrevious(Path.of("B")));
+    assertThat(index.getPreviousChildren(Path.of(""))).isEmpty();
+  }
+
+  @Test
+  void differentFormatDropsPreviousScan() throws IOException {
+    Files.writeString(indexFile, "fingerprint: A\nD\t2\tB\n");
+
+    assertNull(ScanIndex.load(indexFile, "A").getPrevious(Path.of("B")));
+  }
+}
@@ -0,0 +1,44 @@
+package hu.zza.util.gitform;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class StatusCacheTest {
+
+  @Test
+  void saveAndLoad(@TempDir Path settingsPath) throws IOException {
+    Path cacheFile = settingsPath.resolve("status-cache");
+    var status = new RepositoryStatus("main", "", 0, 0, 1, 2, 3, 0);
+    var cache = new StatusCache(cacheFile);
+    cache.put(Path.of("A/project"), "1f", status);
+    cache.save();
+
+    var loaded = StatusCache.load(cacheFile);
+
+    assertEquals(status.toString(), loaded.get(Path.of("A/project"), "1f").toString());
+    assertNull(loaded.get(Path.of("A/project"), "2f"));
+    assertNull(loaded.get(Path.of("B/project"), "1f"));
+  }
+
+  @Test
+  void keyChangesWithIndex(@TempDir Path projectRoot) throws IOException {
+    Path gitDirectory = Files.createDirectories(projectRoot.resolve(".git"));
+    Files.createDirectories(gitDirectory.resolve("refs/heads"));
+    Files.writeString(gitDirectory.resolve("HEAD"), "ref: refs/heads/main\n");
+    Path index = Files.writeString(gitDirectory.resolve("index"), "");
+    Files.setLastModifiedTime(index, FileTime.fromMillis(1_000_000));
+    String key = StatusCache.computeKey(projectRoot);
+
+    assertEquals(key, StatusCache.computeKey(projectRoot));
+    Files.setLastModifiedTime(index, FileTime.fromMillis(2_000_000));
+    assertNotEquals(key, StatusCache.computeKey(projectRoot));
+  }
+}
@@ -0,0 +1,64 @@
+package hu.zza.util.gitform;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+/** Helpers of the tests which run Git, or wait for a background thread. */
+final class TestSupport {
+  /** The limit of the waits (and of the joins of the background threads). */
+  static final long timeoutMillis = 10_000;
+
+  private TestSupport() {}
+
+  /**
+   * Runs a Git command, and asserts that it succeeds.
+   *
+   * @param directory the working directory of the command
+   * @param arguments the arguments of {@code git}
+   */
+  static void git(Path directory, String... arguments) throws Exception {
+    assertTrue(GitCommand.run(directory, arguments).isSuccessful());
+  }
+
+  /**
+   * Runs a Git command, and asserts that it succeeds.
+   *
+   * @param directory the working directory of the command
+   * @param arguments the arguments of {@code git}
+   * @return the trimmed standard output of the command
+   */
+  static String output(Path directory, String... arguments) throws Exception {
+    GitCommand.Result result = GitCommand.run(directory, arguments);
+    assertTrue(result.isSuccessful(), result.getCommandLine());
+    return result.getTrimmedOutput();
+  }
+
+  /**
+   * Waits until the condition holds, and fails after {@link #timeoutMillis}.
+   *
+   * @param condition the condition to poll
+   */
+  static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+    awaitNonNull(() -> condition.getAsBoolean() ? Boolean.TRUE : null);
+  }
+
+  /**
+   * Waits until the supplier gives a value, and fails after {@link #timeoutMillis}.
+   *
+   * @param supplier the supplier to poll
+   * @return the first value of the supplier which is not null
+   */
+  static <T> T awaitNonNull(Supplier<T> supplier) throws InterruptedException {
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+    T value;
+    while ((value = supplier.get()) == null) {
+      assertTrue(System.nanoTime() < deadline, "timeout");
+      Thread.sleep(50);
+    }
+    return value;
+  }
+}
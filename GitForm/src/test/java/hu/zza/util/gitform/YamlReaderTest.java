@@ -0,0 +1,42 @@
+package hu.zza.util.gitform;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+class YamlReaderTest {
+
+  @Test
+  void parseDocument() throws YamlException {
+    var map = YamlReader.parse("# comment\nname: A\r\nlocal:  B/C \norigin: git@github.com:a.git");
+
+    assertEquals(Map.of("name", "A", "local", "B/C", "origin", "git@github.com:a.git"), map);
+  }
+
+  @Test
+  void duplicateKeysLastWins() throws YamlException {
+    assertEquals(Map.of("key", "2", "empty", ""), YamlReader.parse("key: 1\nempty:\nkey: 2\n"));
+  }
+
+  @Test
+  void parseDocuments() throws YamlException {
+    var documents = new ArrayList<Map<String, String>>();
+    YamlReader.parse(CharBuffer.wrap("---\na: 1\n---\n---\nb: 2\n...\nc: 3\n"), documents::add);
+
+    assertEquals(List.of(Map.of("a", "1"), Map.of("b", "2"), Map.of("c", "3")), documents);
+  }
+
+  @Test
+  void parseInvalid() {
+    var exception = assertThrows(YamlException.class, () -> YamlReader.parse("a: 1\n\nb 2\n"));
+
+    assertEquals(3, exception.getLineNumber());
+    assertThat(exception.getMessage()).contains("line 3");
+  }
+}